@@ -0,0 +1,121 @@
+package edu.uwm.cs351;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.uwm.cs351.HexBoard.HexPiece;
+
+/**
+ * The common interface of all hex board implementations:
+ * a collection of hex pieces, with at most one piece at any coordinate,
+ * that can be looked up by coordinate.
+ * Pieces returned by a board are linked to their neighbors
+ * (see {@link HexPiece#move(HexDirection)}).
+ * <p>
+ * Adding a piece at a coordinate that already has a piece
+ * changes the terrain of the existing piece and returns false.
+ */
+public abstract class AbstractHexBoard extends AbstractCollection<HexPiece> {
+
+	/**
+	 * Return the piece at this hex coordinate (if it exists)
+	 * @param h hex coordinate to look for, may be null
+	 * @return hex piece at this location, or null if no such piece
+	 */
+	public abstract HexPiece get(HexCoordinate h);
+
+	/**
+	 * Return an immutable snapshot of the current state of this board,
+	 * which may be searched by many threads at once.
+	 * Later changes to this board do not affect the snapshot.
+	 * @return frozen copy of this board, never null
+	 */
+	public FrozenHexBoard freeze() {
+		return new FrozenHexBoard(this);
+	}
+
+	/**
+	 * Return the connectivity index for the given terrains,
+	 * if this board already keeps one.
+	 * @param ts passable terrains
+	 * @return existing index, or null if none
+	 */
+	ConnectivityIndex existingConnectivity(TerrainSet ts) {
+		return null;
+	}
+
+	/**
+	 * Return the pieces within the given number of steps
+	 * (see {@link HexCoordinate#distance(HexCoordinate)}) of a center.
+	 * This takes time proportional to the area searched,
+	 * not to the size of the board.
+	 * @param center center coordinate, must not be null
+	 * @param radius largest distance to include, must not be negative
+	 * @return new list of the pieces within the radius, never null
+	 */
+	public List<HexPiece> within(HexCoordinate center, int radius) {
+		if (radius < 0) throw new IllegalArgumentException("radius cannot be negative: " + radius);
+		List<HexPiece> result = new ArrayList<>();
+		for (int da = -radius; da <= radius; ++da) {
+			// distance is the largest of |da|, |db| and |da-db|
+			int lo = Math.max(-radius, da - radius), hi = Math.min(radius, da + radius);
+			for (int db = lo; db <= hi; ++db) {
+				HexPiece p = get(new HexCoordinate(center.a() + da, center.b() + db));
+				if (p != null) result.add(p);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Return the pieces at exactly the given distance from a center.
+	 * This takes time proportional to the length of the ring.
+	 * @param center center coordinate, must not be null
+	 * @param radius distance of the ring, must not be negative
+	 * @return new list of the pieces on the ring, never null
+	 */
+	public List<HexPiece> ring(HexCoordinate center, int radius) {
+		if (radius < 0) throw new IllegalArgumentException("radius cannot be negative: " + radius);
+		List<HexPiece> result = new ArrayList<>();
+		if (radius == 0) {
+			HexPiece p = get(center);
+			if (p != null) result.add(p);
+			return result;
+		}
+		// start at a corner, and then walk along each of the six sides
+		HexDirection[] ds = HexDirection.values();
+		HexCoordinate h = center;
+		for (int i=0; i < radius; ++i) h = HexDirection.WEST.move(h);
+		for (HexDirection d : ds) {
+			for (int i=0; i < radius; ++i) {
+				HexPiece p = get(h);
+				if (p != null) result.add(p);
+				h = d.move(h);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Return the pieces whose coordinates lie within a rectangle in (a,b) space.
+	 * The bounds are inclusive, and the rectangle is empty if a lower bound
+	 * exceeds the corresponding upper bound.
+	 * This takes time proportional to the area of the rectangle.
+	 * @param a0 smallest a coordinate
+	 * @param b0 smallest b coordinate
+	 * @param a1 largest a coordinate
+	 * @param b1 largest b coordinate
+	 * @return new list of the pieces within the rectangle, never null
+	 */
+	public List<HexPiece> inRectangle(int a0, int b0, int a1, int b1) {
+		List<HexPiece> result = new ArrayList<>();
+		for (long b = b0; b <= b1; ++b) {
+			for (long a = a0; a <= a1; ++a) {
+				HexPiece p = get(new HexCoordinate((int)a, (int)b));
+				if (p != null) result.add(p);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,131 @@
+package edu.uwm.cs351.util;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.function.ToIntFunction;
+
+/**
+ * A worklist for small, non-negative integer keys that never go below
+ * the key of the last element removed (a "monotone" priority queue, as in
+ * Dijkstra's algorithm or A* with a consistent heuristic).
+ * Elements are kept in one bucket per key, in a circular array covering the keys
+ * from the smallest to the largest key present; removal scans forward
+ * to the next non-empty bucket.  So adding and removing take constant time,
+ * plus the scanning, which in all totals at most the largest key.
+ * <p>
+ * Among elements with equal keys, the last added is returned first,
+ * which in a search favors the element found most recently (usually the deepest),
+ * unless a comparator is given to break ties
+ * (see {@link #BucketWorklist(ToIntFunction, Comparator)}).
+ */
+public class BucketWorklist<E> implements Worklist<E> {
+	private static final int INITIAL_BUCKETS = 16; // must be a power of two
+
+	private final ToIntFunction<? super E> key;
+	private final Comparator<? super E> tieBreak; // null for the last added first
+	private Queue<E>[] buckets = newBuckets(INITIAL_BUCKETS);
+	private int floor; // key of the last element removed: no smaller key may be added
+	private int current; // no key below this is present
+	private int largest; // largest key present, if any
+	private int size;
+
+	@SuppressWarnings("unchecked")
+	private static <E> Queue<E>[] newBuckets(int n) {
+		return (Queue<E>[])new Queue<?>[n];
+	}
+
+	/**
+	 * Create an empty bucket worklist.
+	 * @param key function giving the priority of each element (smaller first),
+	 * must not be null and must not return a negative number
+	 */
+	public BucketWorklist(ToIntFunction<? super E> key) {
+		this(key, null);
+	}
+
+	/**
+	 * Create an empty bucket worklist that orders elements with equal keys
+	 * by the given comparator.  Each bucket is then a binary heap, so adding and
+	 * removing also take time logarithmic in the number of elements with that key.
+	 * @param key function giving the priority of each element (smaller first),
+	 * must not be null and must not return a negative number
+	 * @param tieBreak order among elements with equal keys (smaller first),
+	 * or null to return the last added first
+	 */
+	public BucketWorklist(ToIntFunction<? super E> key, Comparator<? super E> tieBreak) {
+		if (key == null) throw new NullPointerException("key function cannot be null");
+		this.key = key;
+		this.tieBreak = tieBreak;
+	}
+
+	private Queue<E> newBucket() {
+		if (tieBreak == null) return Collections.asLifoQueue(new ArrayDeque<>());
+		return new PriorityQueue<>(tieBreak);
+	}
+
+	/**
+	 * Return the number of elements in the worklist.
+	 * @return number of elements
+	 */
+	public int size() {
+		return size;
+	}
+
+	@Override // required
+	public boolean hasNext() {
+		return size > 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @throws IllegalArgumentException if the key of the element is negative
+	 * or less than that of the last element removed
+	 */
+	@Override // required
+	public void add(E element) {
+		if (element == null) throw new NullPointerException("element cannot be null");
+		int k = key.applyAsInt(element);
+		if (k < floor) throw new IllegalArgumentException("key " + k + " is below that of the last element removed, " + floor);
+		if (size == 0) current = largest = k; // skip empty buckets
+		else {
+			int low = Math.min(current, k), high = Math.max(largest, k);
+			if ((long)high - low >= buckets.length) grow(low, high);
+			current = low;
+			largest = high;
+		}
+		Queue<E> b = buckets[k & (buckets.length - 1)];
+		if (b == null) {
+			b = newBucket();
+			buckets[k & (buckets.length - 1)] = b;
+		}
+		b.add(element);
+		++size;
+	}
+
+	/**
+	 * Make room for keys from low to high, moving each bucket to its new place.
+	 */
+	private void grow(int low, int high) {
+		int n = buckets.length;
+		while ((long)high - low >= n) n *= 2;
+		Queue<E>[] old = buckets;
+		buckets = newBuckets(n);
+		for (int j = current; j <= largest; ++j) {
+			buckets[j & (n - 1)] = old[j & (old.length - 1)];
+		}
+	}
+
+	@Override // required
+	public E next() {
+		if (size == 0) throw new NoSuchElementException("worklist is empty");
+		Queue<E> b;
+		while ((b = buckets[current & (buckets.length - 1)]) == null || b.isEmpty()) ++current;
+		--size;
+		floor = current;
+		return b.remove();
+	}
+}
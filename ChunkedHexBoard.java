@@ -0,0 +1,304 @@
+package edu.uwm.cs351;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import edu.uwm.cs351.HexBoard.HexPiece;
+
+/**
+ * A hex board that partitions hex space into square chunks of
+ * {@value #CHUNK_SIZE} by {@value #CHUNK_SIZE} coordinates (in a and b).
+ * Each chunk that has at least one tile holds a dense array of terrain ordinals
+ * and an occupancy bitmap; a hash map from chunk coordinates to chunks
+ * serves as the directory.
+ * This representation is compact for worlds that are large but locally dense,
+ * and moving between neighbors in the same chunk is just index arithmetic.
+ * <p>
+ * As with {@link PackedHexBoard}, the pieces handed out are flyweights:
+ * the board copies terrain and location from pieces added to it.
+ */
+public class ChunkedHexBoard extends AbstractHexBoard {
+
+	private static final int CHUNK_BITS = 6;
+	/** Number of coordinates along each side of a chunk. */
+	public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+	private static final int CHUNK_AREA = CHUNK_SIZE * CHUNK_SIZE;
+	private static final byte EMPTY = -1;
+	private static final Terrain[] TERRAINS = Terrain.values();
+	private static final int[] DA = new int[HexDirection.values().length];
+	private static final int[] DB = new int[HexDirection.values().length];
+	static {
+		HexCoordinate origin = new HexCoordinate(0, 0);
+		for (HexDirection d : HexDirection.values()) {
+			HexCoordinate h = d.move(origin);
+			DA[d.ordinal()] = h.a();
+			DB[d.ordinal()] = h.b();
+		}
+	}
+
+	/**
+	 * The tiles of one region of the board.
+	 */
+	private static class Chunk {
+		final int ca, cb; // chunk coordinates
+		final byte[] terrain = new byte[CHUNK_AREA];
+		final long[] occupied = new long[CHUNK_AREA / Long.SIZE];
+		int count;
+
+		Chunk(int ca, int cb) {
+			this.ca = ca;
+			this.cb = cb;
+			Arrays.fill(terrain, EMPTY);
+		}
+
+		boolean has(int i) {
+			return (occupied[i >>> 6] & (1L << i)) != 0;
+		}
+
+		/**
+		 * Return the first occupied index at or after i, or CHUNK_AREA if none.
+		 */
+		int nextOccupied(int i) {
+			int w = i >>> 6;
+			if (w >= occupied.length) return CHUNK_AREA;
+			long bits = occupied[w] & (-1L << i);
+			while (bits == 0) {
+				if (++w == occupied.length) return CHUNK_AREA;
+				bits = occupied[w];
+			}
+			return (w << 6) + Long.numberOfTrailingZeros(bits);
+		}
+	}
+
+	/// The data structure
+	private final Map<Long,Chunk> directory = new HashMap<>();
+	private int size;
+	private int version;
+
+	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: "+ s);
+
+	private boolean report(String error) {
+		reporter.accept(error);
+		return false;
+	}
+
+	private boolean wellFormed() {
+		/* Invariant:
+		 * <li>Every chunk in the directory is stored under its own chunk coordinates</li>
+		 * <li>Every chunk is non-empty and its count matches its occupancy bitmap</li>
+		 * <li>A cell is marked occupied iff its terrain is not EMPTY</li>
+		 * <li>size is the sum of the chunk counts</li>
+		 */
+		int total = 0;
+		for (Map.Entry<Long,Chunk> e : directory.entrySet()) {
+			Chunk c = e.getValue();
+			if (c == null) return report("null chunk");
+			if (e.getKey() != HexCoordinate.pack(c.ca, c.cb)) return report("chunk stored under wrong key");
+			int n = 0;
+			for (int i=0; i < CHUNK_AREA; ++i) {
+				boolean has = c.has(i);
+				if (has != (c.terrain[i] != EMPTY)) return report("occupancy inconsistent in chunk " + c.ca + "," + c.cb);
+				if (has) ++n;
+			}
+			if (n != c.count) return report("chunk count is " + c.count + " but found " + n);
+			if (n == 0) return report("empty chunk in directory");
+			total += n;
+		}
+		if (total != size) return report("size is " + size + " but found " + total);
+		return true;
+	}
+
+	/**
+	 * Create an empty board.
+	 */
+	public ChunkedHexBoard() {
+		assert wellFormed() : "invariant not established in constructor";
+	}
+
+	private static int index(int a, int b) {
+		return ((b & CHUNK_MASK) << CHUNK_BITS) | (a & CHUNK_MASK);
+	}
+
+	private Chunk chunkFor(int a, int b) {
+		return directory.get(HexCoordinate.pack(a >> CHUNK_BITS, b >> CHUNK_BITS));
+	}
+
+	@Override // required
+	public int size() {
+		return size;
+	}
+
+	@Override // required
+	public HexPiece get(HexCoordinate h) {
+		if (h == null) return null;
+		Chunk c = chunkFor(h.a(), h.b());
+		if (c == null) return null;
+		int i = index(h.a(), h.b());
+		if (!c.has(i)) return null;
+		return new Piece(c, i, h);
+	}
+
+	@Override // required
+	public boolean add(HexPiece p) {
+		assert wellFormed() : "invariant broken at start of add";
+		HexCoordinate h = p.getLocation();
+		byte t = (byte)p.getTerrain().ordinal();
+		int ca = h.a() >> CHUNK_BITS, cb = h.b() >> CHUNK_BITS;
+		Chunk c = directory.computeIfAbsent(HexCoordinate.pack(ca, cb), (k) -> new Chunk(ca, cb));
+		int i = index(h.a(), h.b());
+		boolean added = !c.has(i);
+		c.terrain[i] = t;
+		if (added) {
+			c.occupied[i >>> 6] |= 1L << i;
+			++c.count;
+			++size;
+			++version;
+		}
+		assert wellFormed() : "invariant broken at end of add";
+		return added;
+	}
+
+	/**
+	 * Return whether this board has a piece with the same location and terrain
+	 * as the given piece.  (Pieces are flyweights, so they cannot be compared by identity.)
+	 * This takes expected constant time.
+	 * @param o object to look for
+	 * @return whether a matching piece is on the board
+	 */
+	@Override // efficiency
+	public boolean contains(Object o) {
+		if (!(o instanceof HexPiece)) return false;
+		HexPiece p = (HexPiece)o;
+		HexPiece q = get(p.getLocation());
+		return q != null && q.getTerrain() == p.getTerrain();
+	}
+
+	@Override // efficiency
+	public boolean remove(Object o) {
+		assert wellFormed() : "invariant broken at start of remove";
+		if (!contains(o)) return false;
+		HexCoordinate h = ((HexPiece)o).getLocation();
+		removeCell(chunkFor(h.a(), h.b()), index(h.a(), h.b()));
+		assert wellFormed() : "invariant broken at end of remove";
+		return true;
+	}
+
+	/**
+	 * Remove an occupied cell, dropping its chunk if that leaves it empty.
+	 */
+	private void removeCell(Chunk c, int i) {
+		c.terrain[i] = EMPTY;
+		c.occupied[i >>> 6] &= ~(1L << i);
+		if (--c.count == 0) {
+			directory.remove(HexCoordinate.pack(c.ca, c.cb));
+		}
+		--size;
+		++version;
+	}
+
+	@Override // efficiency
+	public void clear() {
+		if (size == 0) return;
+		directory.clear();
+		size = 0;
+		++version;
+	}
+
+	@Override // required
+	public Iterator<HexPiece> iterator() {
+		return new MyIterator();
+	}
+
+	/**
+	 * A flyweight piece that reads through to its chunk.
+	 */
+	private class Piece extends HexPiece {
+		private final Chunk chunk;
+		private final int index;
+
+		Piece(Chunk c, int i, HexCoordinate h) {
+			super(TERRAINS[c.terrain[i]], h);
+			chunk = c;
+			index = i;
+		}
+
+		@Override // decorate
+		public Terrain getTerrain() {
+			byte t = chunk.terrain[index];
+			if (t == EMPTY) return terrain; // removed: report last known terrain
+			return TERRAINS[t];
+		}
+
+		@Override // decorate
+		public HexPiece move(HexDirection d) {
+			int la = (index & CHUNK_MASK) + DA[d.ordinal()];
+			int lb = (index >>> CHUNK_BITS) + DB[d.ordinal()];
+			if (((la | lb) & ~CHUNK_MASK) == 0) {
+				int i = (lb << CHUNK_BITS) | la;
+				if (!chunk.has(i)) return null;
+				return new Piece(chunk, i, d.move(location));
+			}
+			return get(d.move(location));
+		}
+	}
+
+	private class MyIterator implements Iterator<HexPiece> {
+		// a snapshot of the directory, so that emptied chunks can be
+		// dropped from the directory during iteration
+		private final Chunk[] chunks = directory.values().toArray(new Chunk[directory.size()]);
+		private int chunkIndex = -1;
+		private int next = CHUNK_AREA; // next occupied index in chunks[chunkIndex]
+		private Chunk lastChunk;
+		private int lastIndex = -1;
+		private int colVersion = version;
+
+		MyIterator() {
+			advance();
+		}
+
+		private void advance() {
+			if (chunkIndex >= 0) next = chunks[chunkIndex].nextOccupied(next + 1);
+			while (next == CHUNK_AREA && chunkIndex + 1 < chunks.length) {
+				next = chunks[++chunkIndex].nextOccupied(0);
+			}
+		}
+
+		private void checkVersion() {
+			if (colVersion != version) throw new ConcurrentModificationException("stale iterator");
+		}
+
+		@Override // required
+		public boolean hasNext() {
+			checkVersion();
+			return next < CHUNK_AREA;
+		}
+
+		@Override // required
+		public HexPiece next() {
+			if (!hasNext()) throw new NoSuchElementException("no more");
+			Chunk c = chunks[chunkIndex];
+			lastChunk = c;
+			lastIndex = next;
+			HexCoordinate h = new HexCoordinate((c.ca << CHUNK_BITS) | (next & CHUNK_MASK),
+					(c.cb << CHUNK_BITS) | (next >>> CHUNK_BITS));
+			HexPiece result = new Piece(c, next, h);
+			advance();
+			return result;
+		}
+
+		@Override // implementation
+		public void remove() {
+			checkVersion();
+			if (lastIndex < 0) throw new IllegalStateException("nothing to remove");
+			removeCell(lastChunk, lastIndex);
+			lastIndex = -1;
+			colVersion = version;
+		}
+	}
+}
@@ -0,0 +1,285 @@
+package edu.uwm.cs351;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import edu.uwm.cs351.HexBoard.HexPiece;
+
+/**
+ * A hex board that may be used by several threads at once.
+ * Reads ({@link #get(HexCoordinate)}, {@link HexPiece#move(HexDirection)},
+ * {@link HexPiece#getTerrain()} and iteration) never lock.
+ * Writes lock one of a fixed number of stripes of buckets, and so writes to
+ * different parts of the table proceed in parallel.
+ * Growing the table locks every stripe, but readers keep using the
+ * old table until the new one is published, and so are never blocked.
+ * <p>
+ * The buckets hold immutable chains of entries; a write replaces
+ * (a prefix of) a chain rather than changing it, so a reader always
+ * sees a consistent chain.  Pieces have object identity and keep it across resizing;
+ * the board copies the terrain and location of a piece added to it, and so
+ * (as with the other boards) {@link #contains(Object)} and {@link #remove(Object)}
+ * match a piece by location and terrain.
+ * Neighbors are found by lookup rather than stored links, so that there is
+ * no link state to keep consistent between threads.
+ * <p>
+ * Iterators are weakly consistent (as in {@link java.util.concurrent}):
+ * they never throw {@link java.util.ConcurrentModificationException},
+ * return each piece at most once, and reflect some (but not necessarily all)
+ * changes made after their creation.
+ */
+public class ConcurrentHexBoard extends AbstractHexBoard {
+
+	private static final int INITIAL_CAPACITY = 16; // power of two
+	private static final int STRIPES = 64; // power of two
+
+	/**
+	 * A piece in a concurrent board.  Its terrain may change
+	 * and is read without locking.
+	 */
+	private class Piece extends HexPiece {
+		private volatile Terrain current;
+		private volatile boolean removed;
+
+		Piece(Terrain t, HexCoordinate h) {
+			super(t, h);
+			current = t;
+		}
+
+		@Override // decorate
+		public Terrain getTerrain() {
+			return current;
+		}
+
+		@Override // decorate
+		public HexPiece move(HexDirection d) {
+			if (removed) return null;
+			return get(d.move(location));
+		}
+	}
+
+	/**
+	 * An immutable link in a bucket's chain.
+	 */
+	private static class Entry {
+		final Piece piece;
+		final int hash;
+		final Entry next;
+
+		Entry(Piece p, int h, Entry n) {
+			piece = p;
+			hash = h;
+			next = n;
+		}
+	}
+
+	/// The data structure
+	private volatile AtomicReferenceArray<Entry> table;
+	private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * Create an empty concurrent board.
+	 */
+	public ConcurrentHexBoard() {
+		table = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+		for (int i=0; i < STRIPES; ++i) locks[i] = new ReentrantLock();
+	}
+
+	private static int hash(HexCoordinate h) {
+		return h.hashCode();
+	}
+
+	private static Piece find(AtomicReferenceArray<Entry> t, HexCoordinate h, int hash) {
+		for (Entry e = t.get(hash & (t.length()-1)); e != null; e = e.next) {
+			if (e.hash == hash && e.piece.location.equals(h)) return e.piece;
+		}
+		return null;
+	}
+
+	@Override // required
+	public int size() {
+		return size.get();
+	}
+
+	@Override // required
+	public HexPiece get(HexCoordinate h) {
+		if (h == null) return null;
+		return find(table, h, hash(h));
+	}
+
+	/**
+	 * Lock the stripe for the given hash in the current table.
+	 * @return the table, which will not change until the lock is released.
+	 */
+	private AtomicReferenceArray<Entry> lockFor(int hash) {
+		for (;;) {
+			AtomicReferenceArray<Entry> t = table;
+			ReentrantLock lock = locks[hash & (t.length()-1) & (STRIPES-1)];
+			lock.lock();
+			if (t == table) return t;
+			lock.unlock(); // table grew while we waited: the stripe may differ
+		}
+	}
+
+	private void unlockFor(AtomicReferenceArray<Entry> t, int hash) {
+		locks[hash & (t.length()-1) & (STRIPES-1)].unlock();
+	}
+
+	@Override // required
+	public boolean add(HexPiece p) {
+		HexCoordinate h = p.getLocation();
+		Terrain terrain = p.getTerrain();
+		int hash = hash(h);
+		AtomicReferenceArray<Entry> t = lockFor(hash);
+		try {
+			Piece existing = find(t, h, hash);
+			if (existing != null) {
+				existing.current = terrain;
+				return false;
+			}
+			int i = hash & (t.length()-1);
+			t.set(i, new Entry(new Piece(terrain, h), hash, t.get(i)));
+		} finally {
+			unlockFor(t, hash);
+		}
+		if (size.incrementAndGet() > table.length() * 3 / 4) grow();
+		return true;
+	}
+
+	/**
+	 * Remove the piece at the given coordinate, if any.
+	 * @param h coordinate to remove, may be null
+	 * @return whether a piece was removed
+	 */
+	public boolean remove(HexCoordinate h) {
+		if (h == null) return false;
+		return remove(h, null, null);
+	}
+
+	/**
+	 * Remove the piece with the same location and terrain as the given piece, if any.
+	 * The terrain is compared while the piece's stripe is locked, so a concurrent
+	 * change of terrain either happens first (and nothing is removed) or after.
+	 * @param o object to remove
+	 * @return whether a piece was removed
+	 */
+	@Override // efficiency
+	public boolean remove(Object o) {
+		if (!(o instanceof HexPiece)) return false;
+		HexPiece p = (HexPiece)o;
+		return remove(p.getLocation(), null, p.getTerrain());
+	}
+
+	/**
+	 * Return whether the board has a piece with the same location and terrain
+	 * as the given piece.
+	 * @param o object to look for
+	 * @return whether a matching piece is on the board
+	 */
+	@Override // efficiency
+	public boolean contains(Object o) {
+		if (!(o instanceof HexPiece)) return false;
+		HexPiece p = (HexPiece)o;
+		HexPiece q = get(p.getLocation());
+		return q != null && q.getTerrain() == p.getTerrain();
+	}
+
+	/**
+	 * Remove the piece at the given coordinate, if it is the expected piece
+	 * and has the expected terrain.
+	 * @param h location to remove from, must not be null
+	 * @param expected piece that must be there, or null for any piece
+	 * @param terrain terrain it must have, or null for any terrain
+	 * @return whether a piece was removed
+	 */
+	private boolean remove(HexCoordinate h, Piece expected, Terrain terrain) {
+		int hash = hash(h);
+		AtomicReferenceArray<Entry> t = lockFor(hash);
+		try {
+			int i = hash & (t.length()-1);
+			Entry head = t.get(i);
+			Entry target = head;
+			while (target != null && !(target.hash == hash && target.piece.location.equals(h))) target = target.next;
+			if (target == null || (expected != null && target.piece != expected)) return false;
+			if (terrain != null && target.piece.current != terrain) return false;
+			// copy the prefix before target, and share the suffix after it
+			Entry rest = target.next;
+			for (Entry e = head; e != target; e = e.next) rest = new Entry(e.piece, e.hash, rest);
+			t.set(i, rest);
+			target.piece.removed = true;
+		} finally {
+			unlockFor(t, hash);
+		}
+		size.decrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Double the table if it is still too full, locking out all writers
+	 * (but not readers) while the new table is built.
+	 */
+	private void grow() {
+		for (ReentrantLock l : locks) l.lock();
+		try {
+			AtomicReferenceArray<Entry> old = table;
+			if (size.get() <= old.length() * 3 / 4) return; // someone else grew it
+			AtomicReferenceArray<Entry> t = new AtomicReferenceArray<>(old.length() * 2);
+			int mask = t.length() - 1;
+			for (int i=0; i < old.length(); ++i) {
+				for (Entry e = old.get(i); e != null; e = e.next) {
+					int j = e.hash & mask;
+					t.set(j, new Entry(e.piece, e.hash, t.get(j)));
+				}
+			}
+			table = t;
+		} finally {
+			for (ReentrantLock l : locks) l.unlock();
+		}
+	}
+
+	@Override // required
+	public Iterator<HexPiece> iterator() {
+		return new MyIterator();
+	}
+
+	private class MyIterator implements Iterator<HexPiece> {
+		private final AtomicReferenceArray<Entry> t = table; // weakly consistent: one table only
+		private int index = -1;
+		private Entry next;
+		private Piece lastReturned;
+
+		MyIterator() {
+			advance(null);
+		}
+
+		private void advance(Entry e) {
+			next = e == null ? null : e.next;
+			while (next == null && ++index < t.length()) next = t.get(index);
+		}
+
+		@Override // required
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override // required
+		public HexPiece next() {
+			if (next == null) throw new NoSuchElementException("no more");
+			Entry e = next;
+			advance(e);
+			lastReturned = e.piece;
+			return lastReturned;
+		}
+
+		@Override // implementation
+		public void remove() {
+			if (lastReturned == null) throw new IllegalStateException("nothing to remove");
+			ConcurrentHexBoard.this.remove(lastReturned.location, lastReturned, null);
+			lastReturned = null;
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package edu.uwm.cs351;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.uwm.cs351.HexBoard.HexPiece;
+
+/**
+ * An index of which pieces of a hex board are connected through
+ * pieces whose terrain is in a given set, so that reachability can be decided
+ * without searching.  The index is kept as a union-find structure,
+ * updated from the board's change feed: an addition (or a change to a passable terrain)
+ * is joined to its passable neighbors at once, while a removal (or a change to an
+ * impassable terrain) only marks its component as dirty.  A dirty component
+ * is rebuilt (in time proportional to its size) the next time it is queried.
+ * <p>
+ * Indexes are created with {@link HexBoard#connectivity(TerrainSet)}.
+ */
+public class ConnectivityIndex {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final TerrainSet passable;
+	private final Map<HexCoordinate,Integer> slots = new HashMap<>(); // live nodes only
+	private HexCoordinate[] locations = new HexCoordinate[INITIAL_CAPACITY];
+	private int[] parent = new int[INITIAL_CAPACITY];
+	private int[] sizes = new int[INITIAL_CAPACITY]; // size of component, for roots
+	private int[] next = new int[INITIAL_CAPACITY]; // cyclic list of the members of each component
+	private boolean[] dirty = new boolean[INITIAL_CAPACITY]; // for roots: some member was removed
+	private int used; // slots used (live or dead)
+
+	/**
+	 * Create the index for a board and keep it current.
+	 * @param b board to index, must not be null
+	 * @param ts passable terrains, must not be null
+	 */
+	ConnectivityIndex(HexBoard b, TerrainSet ts) {
+		passable = ts;
+		build(b);
+		b.addChangeListener(this::changed);
+	}
+
+	private void build(Iterable<HexPiece> pieces) {
+		List<HexCoordinate> live = new ArrayList<>();
+		for (HexPiece p : pieces) {
+			if (passable.contains(p.getTerrain())) live.add(p.getLocation());
+		}
+		reset(live);
+	}
+
+	/**
+	 * Start over with the given locations as the only nodes.
+	 */
+	private void reset(Collection<HexCoordinate> live) {
+		slots.clear();
+		used = 0;
+		for (HexCoordinate h : live) newNode(h);
+		for (int i=0; i < used; ++i) join(i);
+	}
+
+	/**
+	 * Return the passable terrains of this index.
+	 * @return terrains passable in this index, never null
+	 */
+	public TerrainSet getTerrains() {
+		return passable;
+	}
+
+	/**
+	 * Return whether there is a path between two locations through pieces
+	 * with passable terrain (both ends included).
+	 * @param from one location, must not be null
+	 * @param to other location, must not be null
+	 * @return whether the locations are connected
+	 */
+	public boolean connected(HexCoordinate from, HexCoordinate to) {
+		int a = root(from);
+		return a >= 0 && root(to) == a;
+	}
+
+	/**
+	 * Return the number of pieces connected to the given location (including itself)
+	 * through pieces with passable terrain.
+	 * @param h location, must not be null
+	 * @return size of the component, or zero if the location has no passable piece
+	 */
+	public int componentSize(HexCoordinate h) {
+		int r = root(h);
+		return r < 0 ? 0 : sizes[r];
+	}
+
+	/**
+	 * Return the root of the (clean) component for a location, or -1 if none.
+	 */
+	private int root(HexCoordinate h) {
+		Integer i = slots.get(h);
+		if (i == null) return -1;
+		int r = find(i);
+		if (dirty[r]) {
+			rebuild(r);
+			r = find(i);
+		}
+		return r;
+	}
+
+	private int find(int i) {
+		int r = i;
+		while (parent[r] != r) r = parent[r];
+		while (parent[i] != r) {
+			int p = parent[i];
+			parent[i] = r;
+			i = p;
+		}
+		return r;
+	}
+
+	private void union(int i, int j) {
+		int a = find(i), b = find(j);
+		if (a == b) return;
+		if (sizes[a] < sizes[b]) {
+			int t = a;
+			a = b;
+			b = t;
+		}
+		parent[b] = a;
+		sizes[a] += sizes[b];
+		dirty[a] |= dirty[b];
+		int t = next[a]; // splice the member lists
+		next[a] = next[b];
+		next[b] = t;
+	}
+
+	private int newNode(HexCoordinate h) {
+		if (used == parent.length) {
+			int cap = used * 2;
+			locations = Arrays.copyOf(locations, cap);
+			parent = Arrays.copyOf(parent, cap);
+			sizes = Arrays.copyOf(sizes, cap);
+			next = Arrays.copyOf(next, cap);
+			dirty = Arrays.copyOf(dirty, cap);
+		}
+		int i = used++;
+		locations[i] = h;
+		parent[i] = i;
+		sizes[i] = 1;
+		next[i] = i;
+		dirty[i] = false;
+		slots.put(h, i);
+		return i;
+	}
+
+	/** Join a live node with its live neighbors. */
+	private void join(int i) {
+		for (HexDirection d : HexDirection.values()) {
+			Integer n = slots.get(d.move(locations[i]));
+			if (n != null) union(i, n);
+		}
+	}
+
+	/**
+	 * Rebuild a dirty component from its live members.
+	 * @param r root of the component
+	 */
+	private void rebuild(int r) {
+		int[] members = new int[sizes[r]];
+		int n = 0, i = r;
+		do {
+			int following = next[i];
+			if (isLive(i)) {
+				members[n++] = i;
+				parent[i] = i;
+				sizes[i] = 1;
+				next[i] = i;
+				dirty[i] = false;
+			}
+			i = following;
+		} while (i != r);
+		for (int k=0; k < n; ++k) join(members[k]);
+	}
+
+	private boolean isLive(int i) {
+		Integer s = slots.get(locations[i]);
+		return s != null && s == i;
+	}
+
+	private void changed(HexBoard.Change c) {
+		boolean before = c.getOldTerrain() != null && passable.contains(c.getOldTerrain());
+		boolean after = c.getNewTerrain() != null && passable.contains(c.getNewTerrain());
+		if (before == after) return;
+		if (after) {
+			join(newNode(c.getLocation()));
+		} else {
+			int i = slots.remove(c.getLocation());
+			dirty[find(i)] = true;
+			if (used > 2 * slots.size() + INITIAL_CAPACITY) reset(new ArrayList<>(slots.keySet())); // reclaim removed slots
+		}
+	}
+}
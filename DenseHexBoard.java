@@ -0,0 +1,280 @@
+package edu.uwm.cs351;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import edu.uwm.cs351.HexBoard.HexPiece;
+
+/**
+ * A hex board for maps that fill (most of) a rectangle in (a,b) space.
+ * The board is a single array with one byte per location of the rectangle,
+ * row by row: the terrain ordinal, or a sentinel if there is no piece.
+ * There is no hashing and no object per piece: a lookup and a move to a neighbor
+ * are index arithmetic, and iteration scans the array in order.
+ * <p>
+ * As with {@link PackedHexBoard}, the pieces handed out are lightweight flyweights
+ * that read through to the array.  Pieces can only be added within the rectangle
+ * given at construction.  {@link HexBoard.Builder#buildBest()} chooses this
+ * kind of board when the tiles are dense enough in their bounding rectangle.
+ */
+public class DenseHexBoard extends AbstractHexBoard {
+
+	private static final byte ABSENT = -1;
+	private static final Terrain[] TERRAINS = Terrain.values();
+	private static final HexDirection[] DIRECTIONS = HexDirection.values();
+	private static final int[] DELTA_A = new int[DIRECTIONS.length], DELTA_B = new int[DIRECTIONS.length];
+	static {
+		HexCoordinate origin = new HexCoordinate(0, 0);
+		for (HexDirection d : DIRECTIONS) {
+			HexCoordinate h = d.move(origin);
+			DELTA_A[d.ordinal()] = h.a();
+			DELTA_B[d.ordinal()] = h.b();
+		}
+	}
+
+	/// The data structure
+	private final int a0, b0, width, height;
+	private final byte[] terrains; // width*height, row by row
+	private int size;
+	private int version;
+
+	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: "+ s);
+
+	private boolean report(String error) {
+		reporter.accept(error);
+		return false;
+	}
+
+	private boolean wellFormed() {
+		/* Invariant:
+		 * <li>The array has one byte for each location of the rectangle</li>
+		 * <li>Each byte is ABSENT or a terrain ordinal</li>
+		 * <li>size counts the bytes that are not ABSENT</li>
+		 */
+		if (terrains == null) return report("array is null");
+		if (terrains.length != (long)width * height) return report("array has length " + terrains.length + " for " + width + "x" + height);
+		int live = 0;
+		for (byte t : terrains) {
+			if (t == ABSENT) continue;
+			if (t < 0 || t >= TERRAINS.length) return report("bad terrain ordinal " + t);
+			++live;
+		}
+		if (live != size) return report("size is " + size + " but found " + live);
+		return true;
+	}
+
+	/**
+	 * Create an empty board for the locations (a,b) with
+	 * a0 &le; a &lt; a0+width and b0 &le; b &lt; b0+height.
+	 * @param a0 smallest a coordinate
+	 * @param b0 smallest b coordinate
+	 * @param width number of a coordinates, must be positive
+	 * @param height number of b coordinates, must be positive
+	 */
+	public DenseHexBoard(int a0, int b0, int width, int height) {
+		if (width <= 0 || height <= 0) throw new IllegalArgumentException("dimensions must be positive: " + width + "x" + height);
+		if ((long)width * height > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("rectangle too large: " + width + "x" + height);
+		if ((long)a0 + width - 1 > Integer.MAX_VALUE || (long)b0 + height - 1 > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("rectangle extends past the largest coordinate");
+		}
+		this.a0 = a0;
+		this.b0 = b0;
+		this.width = width;
+		this.height = height;
+		terrains = new byte[width * height];
+		Arrays.fill(terrains, ABSENT);
+		assert wellFormed() : "invariant not established in constructor";
+	}
+
+	/**
+	 * Return the index of a location in the array, or -1 if it is outside the rectangle.
+	 */
+	private int indexOf(int a, int b) {
+		long da = (long)a - a0, db = (long)b - b0;
+		if (da < 0 || da >= width || db < 0 || db >= height) return -1;
+		return (int)db * width + (int)da;
+	}
+
+	private HexCoordinate location(int i) {
+		return new HexCoordinate(a0 + i % width, b0 + i / width);
+	}
+
+	@Override // required
+	public int size() {
+		return size;
+	}
+
+	@Override // required
+	public HexPiece get(HexCoordinate h) {
+		if (h == null) return null;
+		int i = indexOf(h.a(), h.b());
+		if (i < 0 || terrains[i] == ABSENT) return null;
+		return new Piece(i, h);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @throws IllegalArgumentException if the piece lies outside the rectangle of this board
+	 */
+	@Override // required
+	public boolean add(HexPiece p) {
+		assert wellFormed() : "invariant broken at start of add";
+		HexCoordinate h = p.getLocation();
+		int i = indexOf(h.a(), h.b());
+		if (i < 0) throw new IllegalArgumentException("location " + h + " is outside the board");
+		boolean isNew = terrains[i] == ABSENT;
+		terrains[i] = (byte)p.getTerrain().ordinal();
+		if (isNew) {
+			++size;
+			++version;
+		}
+		assert wellFormed() : "invariant broken at end of add";
+		return isNew;
+	}
+
+	/**
+	 * Add tiles to this board in bulk, checking the invariant only once.
+	 * As with {@link #add(HexPiece)}, a later tile at the same location
+	 * changes the terrain of the earlier piece.
+	 * @param tiles tiles to add, must not be null or include null
+	 * @return whether any new piece was added
+	 * @throws IllegalArgumentException if a tile lies outside the rectangle of this board
+	 * (in which case the tiles before it have been added)
+	 */
+	public boolean addTiles(Collection<? extends HexTile> tiles) {
+		assert wellFormed() : "invariant broken at start of addTiles";
+		int before = size;
+		try {
+			for (HexTile t : tiles) {
+				HexCoordinate h = t.getLocation();
+				int i = indexOf(h.a(), h.b());
+				if (i < 0) throw new IllegalArgumentException("location " + h + " is outside the board");
+				if (terrains[i] == ABSENT) ++size;
+				terrains[i] = (byte)t.getTerrain().ordinal();
+			}
+		} finally {
+			if (size != before) ++version;
+		}
+		assert wellFormed() : "invariant broken at end of addTiles";
+		return size != before;
+	}
+
+	/**
+	 * Return whether this board has a piece with the same location and terrain
+	 * as the given piece.  (Pieces are flyweights, so they cannot be compared by identity.)
+	 * This takes constant time.
+	 * @param o object to look for
+	 * @return whether a matching piece is on the board
+	 */
+	@Override // efficiency
+	public boolean contains(Object o) {
+		if (!(o instanceof HexPiece)) return false;
+		HexPiece p = (HexPiece)o;
+		HexPiece q = get(p.getLocation());
+		return q != null && q.getTerrain() == p.getTerrain();
+	}
+
+	@Override // efficiency
+	public boolean remove(Object o) {
+		if (!contains(o)) return false;
+		HexCoordinate h = ((HexPiece)o).getLocation();
+		removeIndex(indexOf(h.a(), h.b()));
+		assert wellFormed() : "invariant broken at end of remove";
+		return true;
+	}
+
+	@Override // efficiency
+	public void clear() {
+		if (size == 0) return;
+		Arrays.fill(terrains, ABSENT);
+		size = 0;
+		++version;
+	}
+
+	private void removeIndex(int i) {
+		terrains[i] = ABSENT;
+		--size;
+		++version;
+	}
+
+	@Override // required
+	public Iterator<HexPiece> iterator() {
+		return new MyIterator();
+	}
+
+	/**
+	 * A flyweight piece that reads its terrain from the array.
+	 * Locations never move, so a piece keeps its index.
+	 */
+	private class Piece extends HexPiece {
+		private final int index;
+
+		Piece(int index, HexCoordinate h) {
+			super(TERRAINS[terrains[index]], h);
+			this.index = index;
+		}
+
+		@Override // decorate
+		public Terrain getTerrain() {
+			byte t = terrains[index];
+			if (t == ABSENT) return terrain;
+			return TERRAINS[t];
+		}
+
+		@Override // decorate
+		public HexPiece move(HexDirection d) {
+			if (terrains[index] == ABSENT) return null;
+			int a = location.a() + DELTA_A[d.ordinal()], b = location.b() + DELTA_B[d.ordinal()];
+			int n = indexOf(a, b);
+			if (n < 0 || terrains[n] == ABSENT) return null;
+			return new Piece(n, new HexCoordinate(a, b));
+		}
+	}
+
+	private class MyIterator implements Iterator<HexPiece> {
+		private int next = -1; // next present index, or terrains.length if none
+		private int lastReturned = -1;
+		private int colVersion = version;
+
+		MyIterator() {
+			advance();
+		}
+
+		private void advance() {
+			do {
+				++next;
+			} while (next < terrains.length && terrains[next] == ABSENT);
+		}
+
+		private void checkVersion() {
+			if (colVersion != version) throw new ConcurrentModificationException("stale iterator");
+		}
+
+		@Override // required
+		public boolean hasNext() {
+			checkVersion();
+			return next < terrains.length;
+		}
+
+		@Override // required
+		public HexPiece next() {
+			if (!hasNext()) throw new NoSuchElementException("no more");
+			lastReturned = next;
+			advance();
+			return new Piece(lastReturned, location(lastReturned));
+		}
+
+		@Override // implementation
+		public void remove() {
+			checkVersion();
+			if (lastReturned < 0) throw new IllegalStateException("nothing to remove");
+			removeIndex(lastReturned);
+			lastReturned = -1;
+			colVersion = version;
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package edu.uwm.cs351;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import edu.uwm.cs351.HexBoard.HexPiece;
+
+/**
+ * An immutable snapshot of a hex board in flat arrays.
+ * Tiles are numbered densely from zero; for each tile we keep its packed coordinate,
+ * its terrain ordinal and the numbers of its six neighbors (precomputed
+ * when the snapshot is built).  An open-addressing index maps coordinates to tile numbers.
+ * <p>
+ * Since a frozen board never changes, any number of threads may
+ * read and search it at the same time, and its iterators do no
+ * modification checks.  All mutating operations throw
+ * {@link UnsupportedOperationException}.
+ * The pieces handed out are flyweights that read through to the arrays.
+ */
+public class FrozenHexBoard extends AbstractHexBoard {
+
+	private static final int DIRECTIONS = 6;
+	private static final Terrain[] TERRAINS = Terrain.values();
+
+	/// The data structure (never changed after construction)
+	private final int size;
+	private final long[] keys; // packed coordinate of each tile
+	private final byte[] terrains; // terrain ordinal of each tile
+	private final int[] links; // DIRECTIONS per tile, -1 if none
+	private final int[] index; // tile number + 1, or 0 if empty; length a power of two
+
+	/**
+	 * Create a snapshot of the given pieces, in time and space
+	 * linear in their number.
+	 * @param pieces pieces to copy, must not be null, nor include null or
+	 * two pieces with the same location
+	 */
+	public FrozenHexBoard(Iterable<? extends HexPiece> pieces) {
+		int n = 0;
+		long[] ks = new long[16];
+		byte[] ts = new byte[16];
+		for (HexPiece p : pieces) {
+			if (n == ks.length) {
+				ks = Arrays.copyOf(ks, n * 2);
+				ts = Arrays.copyOf(ts, n * 2);
+			}
+			HexCoordinate h = p.getLocation();
+			ks[n] = HexCoordinate.pack(h.a(), h.b());
+			ts[n] = (byte)p.getTerrain().ordinal();
+			++n;
+		}
+		size = n;
+		keys = Arrays.copyOf(ks, n);
+		terrains = Arrays.copyOf(ts, n);
+		index = buildIndex(keys);
+		links = buildLinks(keys, index);
+	}
+
+	/**
+	 * Create a snapshot from arrays of packed coordinates
+	 * (see {@link HexCoordinate#pack(int, int)}) and terrain ordinals,
+	 * which are used directly (not copied) and must not be changed afterwards.
+	 * @param keys packed coordinates, must not be null or have duplicates
+	 * @param terrains terrain ordinals, must be the same length as keys
+	 * @throws IllegalArgumentException if a terrain ordinal is out of range
+	 */
+	FrozenHexBoard(long[] keys, byte[] terrains) {
+		if (keys.length != terrains.length) throw new IllegalArgumentException("keys and terrains must have the same length");
+		for (byte t : terrains) {
+			if (t < 0 || t >= TERRAINS.length) throw new IllegalArgumentException("no terrain with ordinal " + t);
+		}
+		size = keys.length;
+		this.keys = keys;
+		this.terrains = terrains;
+		index = buildIndex(keys);
+		links = buildLinks(keys, index);
+	}
+
+	private static int indexCapacity(int n) {
+		int cap = 16;
+		while (cap <= 2 * n) cap <<= 1;
+		return cap;
+	}
+
+	private static int[] buildIndex(long[] keys) {
+		int n = keys.length;
+		int[] index = new int[indexCapacity(n)];
+		int mask = index.length - 1;
+		for (int i=0; i < n; ++i) {
+			int j = HexCoordinate.mix(keys[i]) & mask;
+			while (index[j] != 0) {
+				if (keys[index[j]-1] == keys[i]) throw new IllegalArgumentException("duplicate location in snapshot");
+				j = (j+1) & mask;
+			}
+			index[j] = i + 1;
+		}
+		return index;
+	}
+
+	private static int[] buildLinks(long[] keys, int[] index) {
+		int n = keys.length;
+		int[] links = new int[n * DIRECTIONS];
+		HexDirection[] ds = HexDirection.values();
+		for (int i=0; i < n; ++i) {
+			HexCoordinate h = new HexCoordinate(HexCoordinate.unpackA(keys[i]), HexCoordinate.unpackB(keys[i]));
+			for (HexDirection d : ds) {
+				HexCoordinate h2 = d.move(h);
+				links[i*DIRECTIONS + d.ordinal()] = find(keys, index, HexCoordinate.pack(h2.a(), h2.b()));
+			}
+		}
+		return links;
+	}
+
+	/**
+	 * Return the number of bytes in the arrays of this snapshot
+	 * (object headers are not counted).
+	 * @return estimated memory used
+	 */
+	long memoryEstimate() {
+		return (long)keys.length * Long.BYTES + terrains.length + ((long)links.length + index.length) * Integer.BYTES;
+	}
+
+	/**
+	 * Return the number of bytes in the arrays of a snapshot with
+	 * the given number of tiles, as {@link #memoryEstimate()} would once it is built.
+	 * @param n number of tiles, not negative
+	 * @return estimated memory used
+	 */
+	static long memoryEstimate(int n) {
+		return n * (Long.BYTES + 1L + DIRECTIONS * Integer.BYTES) + (long)indexCapacity(n) * Integer.BYTES;
+	}
+
+	/**
+	 * Return the tile number for a packed coordinate, or -1 if none.
+	 */
+	private int find(long k) {
+		return find(keys, index, k);
+	}
+
+	private static int find(long[] keys, int[] index, long k) {
+		int mask = index.length - 1;
+		for (int j = HexCoordinate.mix(k) & mask; index[j] != 0; j = (j+1) & mask) {
+			if (keys[index[j]-1] == k) return index[j]-1;
+		}
+		return -1;
+	}
+
+	private HexCoordinate location(int i) {
+		return new HexCoordinate(HexCoordinate.unpackA(keys[i]), HexCoordinate.unpackB(keys[i]));
+	}
+
+	@Override // required
+	public int size() {
+		return size;
+	}
+
+	@Override // required
+	public HexPiece get(HexCoordinate h) {
+		if (h == null) return null;
+		int i = find(HexCoordinate.pack(h.a(), h.b()));
+		if (i < 0) return null;
+		return new Piece(i, h);
+	}
+
+	/**
+	 * Return whether this board has a piece with the same location and terrain
+	 * as the given piece.  (Pieces are flyweights, so they cannot be compared by identity.)
+	 * This takes expected constant time.
+	 * @param o object to look for
+	 * @return whether a matching piece is on the board
+	 */
+	@Override // efficiency
+	public boolean contains(Object o) {
+		if (!(o instanceof HexPiece)) return false;
+		HexPiece p = (HexPiece)o;
+		HexCoordinate h = p.getLocation();
+		int i = find(HexCoordinate.pack(h.a(), h.b()));
+		return i >= 0 && terrains[i] == p.getTerrain().ordinal();
+	}
+
+	/**
+	 * Not supported: a frozen board cannot change.
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override // implementation
+	public boolean remove(Object o) {
+		throw new UnsupportedOperationException("frozen board cannot be changed");
+	}
+
+	@Override // efficiency
+	public FrozenHexBoard freeze() {
+		return this;
+	}
+
+	@Override // required
+	public Iterator<HexPiece> iterator() {
+		return new Iterator<HexPiece>() {
+			private int next = 0;
+
+			@Override // required
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override // required
+			public HexPiece next() {
+				if (next >= size) throw new NoSuchElementException("no more");
+				int i = next++;
+				return new Piece(i, location(i));
+			}
+		};
+	}
+
+	/**
+	 * A read-only flyweight for a tile of the snapshot.
+	 */
+	private class Piece extends HexPiece {
+		private final int tile;
+
+		Piece(int i, HexCoordinate h) {
+			super(TERRAINS[terrains[i]], h);
+			tile = i;
+		}
+
+		@Override // decorate
+		public HexPiece move(HexDirection d) {
+			int n = links[tile*DIRECTIONS + d.ordinal()];
+			if (n < 0) return null;
+			return new Piece(n, d.move(location));
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package edu.uwm.cs351.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.ToIntFunction;
+
+/**
+ * A worklist that returns the element with the smallest key first,
+ * kept in an array as a d-ary heap (each node has up to d children).
+ * The key of an element is computed once, when it is added, and kept
+ * in a parallel array, so comparisons do not call the key function.
+ * A larger d makes the heap shallower, which makes adding cheaper
+ * and removal (which compares all the children of each node on the way down)
+ * costlier; four is a good choice for most uses.
+ * The order among elements with equal keys is unspecified.
+ */
+public class HeapWorklist<E> implements Worklist<E> {
+	private static final int DEFAULT_ARITY = 4;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final int arity;
+	private final ToIntFunction<? super E> key;
+	private Object[] elements = new Object[INITIAL_CAPACITY];
+	private int[] keys = new int[INITIAL_CAPACITY];
+	private int size;
+
+	/**
+	 * Create an empty 4-ary heap worklist.
+	 * @param key function giving the priority of each element (smaller first), must not be null
+	 */
+	public HeapWorklist(ToIntFunction<? super E> key) {
+		this(DEFAULT_ARITY, key);
+	}
+
+	/**
+	 * Create an empty heap worklist with the given number of children per node.
+	 * @param arity number of children per node, at least 2
+	 * @param key function giving the priority of each element (smaller first), must not be null
+	 */
+	public HeapWorklist(int arity, ToIntFunction<? super E> key) {
+		if (arity < 2) throw new IllegalArgumentException("arity must be at least 2: " + arity);
+		if (key == null) throw new NullPointerException("key function cannot be null");
+		this.arity = arity;
+		this.key = key;
+	}
+
+	/**
+	 * Return the number of elements in the worklist.
+	 * @return number of elements
+	 */
+	public int size() {
+		return size;
+	}
+
+	@Override // required
+	public boolean hasNext() {
+		return size > 0;
+	}
+
+	@Override // required
+	public void add(E element) {
+		if (element == null) throw new NullPointerException("element cannot be null");
+		int k = key.applyAsInt(element);
+		if (size == elements.length) {
+			elements = Arrays.copyOf(elements, size * 2);
+			keys = Arrays.copyOf(keys, size * 2);
+		}
+		siftUp(size++, element, k);
+	}
+
+	@Override // required
+	public E next() {
+		if (size == 0) throw new NoSuchElementException("worklist is empty");
+		@SuppressWarnings("unchecked")
+		E result = (E)elements[0];
+		--size;
+		if (size > 0) siftDown(0, elements[size], keys[size]);
+		elements[size] = null;
+		return result;
+	}
+
+	/** Move a hole up from i until the element fits, and put it there. */
+	private void siftUp(int i, Object element, int k) {
+		while (i > 0) {
+			int parent = (i - 1) / arity;
+			if (keys[parent] <= k) break;
+			elements[i] = elements[parent];
+			keys[i] = keys[parent];
+			i = parent;
+		}
+		elements[i] = element;
+		keys[i] = k;
+	}
+
+	/** Move a hole down from i until the element fits, and put it there. */
+	private void siftDown(int i, Object element, int k) {
+		for (;;) {
+			int first = i * arity + 1;
+			if (first >= size) break;
+			int least = first;
+			for (int c = first + 1; c < Math.min(first + arity, size); ++c) {
+				if (keys[c] < keys[least]) least = c;
+			}
+			if (keys[least] >= k) break;
+			elements[i] = elements[least];
+			keys[i] = keys[least];
+			i = least;
+		}
+		elements[i] = element;
+		keys[i] = k;
+	}
+}
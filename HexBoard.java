@@ -1,17 +1,26 @@
 package edu.uwm.cs351;
 
 import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.ConcurrentModificationException;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 import edu.uwm.cs351.HexBoard.HexPiece;
+import edu.uwm.cs351.util.InvariantLevel;
 import edu.uwm.cs351.util.Primes;
 
-public class HexBoard extends AbstractCollection<HexBoard.HexPiece> {
+public class HexBoard extends AbstractHexBoard {
 
 	@Override
 	public Iterator<HexPiece> iterator() {
@@ -31,8 +40,10 @@ public class HexBoard extends AbstractCollection<HexBoard.HexPiece> {
 	public static class HexPiece {
 		final HexCoordinate location;
 		Terrain terrain;		
-		HexPiece[] neighbors = new HexPiece[HexDirection.values().length];
+		// one field per direction, rather than an array (which would be another object per piece)
+		HexPiece northeast, east, southeast, southwest, west, northwest;
 		HexPiece nextInChain; // new to Homework #11
+		HexPiece nextOfTerrain, prevOfTerrain; // terrain index (see HexBoard#piecesOf)
 
 		/**
 		 * Create a piece with the given aspects.
@@ -66,7 +77,7 @@ public class HexBoard extends AbstractCollection<HexBoard.HexPiece> {
 		 * @return an immutable hex tile
 		 */
 		public HexTile asTile() {
-			return new HexTile(terrain, location);
+			return new HexTile(getTerrain(), getLocation());
 		}
 
 		/**
@@ -75,23 +86,82 @@ public class HexBoard extends AbstractCollection<HexBoard.HexPiece> {
 		 * @return piece in that direction, possibly null
 		 */
 		public HexPiece move(HexDirection d) {
-			return neighbors[d.ordinal()];
+			return getNeighbor(d);
+		}
+
+		/**
+		 * Return the piece linked in the given direction.
+		 * Unlike {@link #move(HexDirection)}, this cannot be overridden.
+		 */
+		final HexPiece getNeighbor(HexDirection d) {
+			switch (d) {
+			case NORTHEAST: return northeast;
+			case EAST: return east;
+			case SOUTHEAST: return southeast;
+			case SOUTHWEST: return southwest;
+			case WEST: return west;
+			case NORTHWEST: return northwest;
+			default: throw new AssertionError("unknown direction " + d);
+			}
+		}
+
+		/**
+		 * Link a piece (or null) in the given direction.
+		 */
+		final void link(HexDirection d, HexPiece p) {
+			switch (d) {
+			case NORTHEAST: northeast = p; break;
+			case EAST: east = p; break;
+			case SOUTHEAST: southeast = p; break;
+			case SOUTHWEST: southwest = p; break;
+			case WEST: west = p; break;
+			case NORTHWEST: northwest = p; break;
+			default: throw new AssertionError("unknown direction " + d);
+			}
 		}
 
 		@Override // implementation
 		public String toString() {
-			return terrain + "" + location + super.toString();
+			return getTerrain() + "" + getLocation() + super.toString();
 		}
 	}
 
 
 	private static final int INITIAL_CAPACITY = 7; // initial and minimum capacity
+	private static final int MIGRATION_STEP = 4; // old buckets moved per addition during an incremental resize
+
+	/**
+	 * How a hex board grows its table when it gets full.
+	 */
+	public enum Resizing {
+		/** Rehash every piece into the larger table at once (the default). */
+		EAGER,
+		/**
+		 * Keep the old table alongside the larger one and move a few of its
+		 * buckets on each later addition, so no single addition pays for the whole rehash.
+		 */
+		INCREMENTAL
+	}
 
-	/// The data structure: three fields.  DO not add any more
+	/// The data structure: the three original fields,
+	/// plus the state of an incremental resize.
 
 	private HexPiece[] table;
 	private int size;
 	private int version;
+	private boolean incremental;
+	private HexPiece[] oldTable; // still being emptied into table, or null if no resize is in progress
+	private int migrated; // buckets of oldTable already emptied
+	private int rehashes; // number of times the table has grown (for statistics only)
+	private HexPiece[] terrainHeads; // per terrain, a cyclic doubly-linked list, or null if the index is not built
+	private int[] terrainCounts; // per terrain, the number of pieces, or null if the index is not built
+	private int indexVersion; // changes whenever the terrain index changes
+	private int changeVersion; // number of changes (additions, terrain changes, removals) ever made
+	private Change[] changeLog; // ring buffer indexed by change version, or null if no log is kept
+	private int logStart; // change version when the log was started
+	private List<Consumer<? super Change>> listeners; // null if none were ever added
+	private int opsSinceCheck; // operations since the last sampled invariant check
+	private Map<TerrainSet,ConnectivityIndex> connectivity; // null until one is asked for
 
 
 	/** Return the location within the hash table
@@ -100,35 +170,59 @@ public class HexBoard extends AbstractCollection<HexBoard.HexPiece> {
 	 * @return location where piece with this coordinate is or would go
 	 */
 	private int locate(HexCoordinate t) { //helper method
-		// 取得 hashCode，並對 table.length 取模，避免負數
+		return locate(t, table);
+	}
+
+	private static int locate(HexCoordinate t, HexPiece[] a) {
+		// 取得 hashCode，並對 a.length 取模，避免負數
 		int h = t.hashCode();
-		int i = h % table.length;
+		int i = h % a.length;
 		if (i < 0) {
-			i = i + table.length; // 保證索引不為負數
+			i = i + a.length; // 保證索引不為負數
 		}
 		return i;
 	}
 
+	/**
+	 * Return the number of buckets, including those of the old table
+	 * while an incremental resize is in progress.
+	 * Buckets at or after table.length are those of the old table.
+	 */
+	private int buckets() {
+		return oldTable == null ? table.length : table.length + oldTable.length;
+	}
+
+	private HexPiece bucket(int i) {
+		return i < table.length ? table[i] : oldTable[i - table.length];
+	}
+
+	private void setBucket(int i, HexPiece p) {
+		if (i < table.length) table[i] = p;
+		else oldTable[i - table.length] = p;
+	}
+
 	/**
 	 * Return the piece at the given hex coordinate, if any.
 	 * @param h hex coordinate
 	 * @return piece at that coordinate, or null if none
 	 */
 	private HexPiece findPiece(HexCoordinate h) {
-		// TODO find a hex piece at the given coordinate.
-
-		for (HexPiece target : table) {
-			HexPiece p = target;
-			if (p == null) continue;
-
-			//記錄已經走訪過的 HexPiece，避免在「鏈結」中重複走訪 因為不是每條鏈都一定是循環的
-			java.util.HashSet<HexPiece> visited = new java.util.HashSet<>();
-			//table.length
-			while (p != null && visited.add(p)) {
-				if (p.location.equals(h)) return p;
-				p = p.nextInChain;
-			}
+		if (h == null) return null;
+		HexPiece p = findInChain(table[locate(h)], h);
+		if (p == null && oldTable != null) {
+			int i = locate(h, oldTable);
+			if (i >= migrated) p = findInChain(oldTable[i], h);
 		}
+		return p;
+	}
+
+	private static HexPiece findInChain(HexPiece start, HexCoordinate h) {
+		if (start == null) return null;
+		HexPiece p = start;
+		do {
+			if (p.location.equals(h)) return p;
+			p = p.nextInChain;
+		} while (p != start && p != null);
 		return null;
 	}
 
@@ -152,17 +246,29 @@ public class HexBoard extends AbstractCollection<HexBoard.HexPiece> {
 		 * <li> For every piece: 
 		 *    a neighbor in a certain direction is in the table iff it is in the neighbor array for that direction.
 		 *    </li>
+		 * <li> If a resize is in progress, the old table also satisfies the first two conditions,
+		 *    its first 'migrated' buckets are empty, and its pieces are in its correct chains;
+		 *    otherwise 'migrated' is zero.</li>
 		 */
 		// TODO (You may wish to copy some code from the solution to Homework #5)
 		if (table == null) return report("table is null");// 1. The table array is not null
 		// 2. The length of the array is a prime number and at least the initial capacity
 		if (table.length < INITIAL_CAPACITY || !Primes.isPrime(table.length)) return report("table length is is a prime number and at least the initial capacity");
+		if (oldTable == null) {
+			if (migrated != 0) return report("migrated is " + migrated + " with no resize in progress");
+		} else {
+			if (oldTable.length < INITIAL_CAPACITY || !Primes.isPrime(oldTable.length)) return report("old table length is not a prime number at least the initial capacity");
+			if (migrated < 0 || migrated >= oldTable.length) return report("migrated out of range: " + migrated);
+			for (int i=0; i < migrated; ++i) {
+				if (oldTable[i] != null) return report("old bucket " + i + " was migrated but is not empty");
+			}
+		}
 		// 3. Every chain is cyclic to the start (modified Tortoise and Hare)
 		int total = 0;
 		java.util.HashSet<HexCoordinate> seen = new java.util.HashSet<>();
 
-		for (int i = 0; i < table.length; ++i) {
-			HexPiece start = table[i];
+		for (int i = 0; i < buckets(); ++i) {
+			HexPiece start = bucket(i);
 			if (start == null) continue;
 
 			// Use Tortoise and Hare to detect cycle
@@ -187,28 +293,56 @@ public class HexBoard extends AbstractCollection<HexBoard.HexPiece> {
 				if (!seen.add(p.location)) return report("the coordinate is not the only " + p.location);
 
 				// Hash index check
-				int correctIndex = (p.location.hashCode()) % table.length;
-				if(correctIndex<0) {
-					correctIndex=table.length+correctIndex;	
-				}
+				int correctIndex = i < table.length ? locate(p.location, table) : table.length + locate(p.location, oldTable);
 				if (correctIndex != i) return report("Piece with location " + p.location + " is in wrong chain");
 
-				// 9. Neighbor consistency
+				total++;
+				if (p.nextInChain == start) break;
+			}
+		}
+
+		// 9. Neighbor consistency (only once every chain is known to be cyclic,
+		// since findPiece walks a chain until it returns to the start)
+		for (int i = 0; i < buckets(); ++i) {
+			HexPiece start = bucket(i);
+			if (start == null) continue;
+			HexPiece p = start;
+			do {
 				for(HexDirection direction: HexDirection.values()) { //copy from HW5
-					HexPiece neighbor = p.neighbors[direction.ordinal()];
+					HexPiece neighbor = p.getNeighbor(direction);
 					HexCoordinate expected= direction.move(p.location);
 					HexPiece current = findPiece(expected);
 					if(current!=neighbor) {
 						return report("the tile is not the same as neighbor");
 					}
-					if(neighbor != null && p != neighbor.neighbors[direction.reverse().ordinal()]) {
+					if(neighbor != null && p != neighbor.getNeighbor(direction.reverse())) {
 						return report("the neighbor is not point back to the current tail");
 					}
+				}
+				p = p.nextInChain;
+			} while (p != start);
+		}
 
+		// 10. The terrain index, if built, has every piece in the list for its terrain
+		if (terrainHeads != null || terrainCounts != null) {
+			if (terrainHeads == null || terrainCounts == null) return report("terrain index half built");
+			int indexed = 0;
+			for (Terrain t : Terrain.values()) {
+				int n = 0;
+				HexPiece head = terrainHeads[t.ordinal()];
+				if (head != null) {
+					HexPiece p = head;
+					do {
+						if (p.terrain != t) return report("piece " + p.location + " in index list for " + t);
+						if (p.nextOfTerrain == null || p.nextOfTerrain.prevOfTerrain != p) return report("terrain index list broken at " + p.location);
+						if (++n > total) return report("terrain index list for " + t + " is not cyclic");
+						p = p.nextOfTerrain;
+					} while (p != head);
 				}
-				total++;
-				if (p.nextInChain == start) break;
+				if (n != terrainCounts[t.ordinal()]) return report("count for " + t + " is " + terrainCounts[t.ordinal()] + " but list has " + n);
+				indexed += n;
 			}
+			if (indexed != total) return report("terrain index has " + indexed + " pieces, not " + total);
 		}
 
 		// 6. size field should match the number of counted pieces
@@ -220,14 +354,140 @@ public class HexBoard extends AbstractCollection<HexBoard.HexPiece> {
 		return true;
 	}
 
+	private static InvariantLevel invariantLevel = InvariantLevel.configured(HexBoard.class);
+
+	/**
+	 * Return how thoroughly hex boards check their invariant when assertions are enabled.
+	 * @return current level, never null
+	 */
+	public static InvariantLevel getInvariantLevel() {
+		return invariantLevel;
+	}
+
+	/**
+	 * Set how thoroughly hex boards check their invariant when assertions are enabled.
+	 * At the incremental level, an operation checks only the chains of the location
+	 * it touched and of the six locations around it.
+	 * @param l level to use, must not be null
+	 */
+	public static void setInvariantLevel(InvariantLevel l) {
+		if (l == null) throw new NullPointerException("invariant level cannot be null");
+		invariantLevel = l;
+	}
+
+	/**
+	 * Check the invariant as thoroughly as the current level asks.
+	 * @param h location touched by the operation, or null if none in particular
+	 * @return whether no problem was found
+	 */
+	private boolean checkInvariant(HexCoordinate h) {
+		switch (invariantLevel) {
+		case OFF:
+			return true;
+		case SAMPLED:
+			if (!InvariantLevel.sampleDue(++opsSinceCheck, size)) return true;
+			opsSinceCheck = 0;
+			return wellFormed();
+		case INCREMENTAL:
+			return wellFormedAt(h);
+		default:
+			return wellFormed();
+		}
+	}
+
+	/**
+	 * Check the parts of the invariant that concern a single location:
+	 * the facts about the fields that take constant time, that the chains
+	 * for the location and its neighbors are cyclic and correctly hashed, that
+	 * there is at most one piece at the location, and that it and its neighbors
+	 * are linked correctly (and in the terrain index, if built).
+	 * @param h location to check around, or null to check only the fields
+	 * @return whether no problem was found
+	 */
+	private boolean wellFormedAt(HexCoordinate h) {
+		if (table == null) return report("table is null");
+		if (table.length < INITIAL_CAPACITY) return report("table length less than the initial capacity");
+		if (oldTable == null ? migrated != 0 : migrated < 0 || migrated >= oldTable.length) return report("migrated out of range: " + migrated);
+		if (size < 0 || size >= table.length) return report("size " + size + " out of range for table of length " + table.length);
+		if (h == null) return true;
+		if (!chainsWellFormed(h)) return false;
+		for (HexDirection d : HexDirection.values()) {
+			if (!chainsWellFormed(d.move(h))) return false;
+		}
+		int copies = countIn(locate(h), h);
+		if (oldTable != null) copies += countIn(table.length + locate(h, oldTable), h);
+		if (copies > 1) return report("the coordinate is not the only " + h);
+		HexPiece p = findPiece(h);
+		for (HexDirection d : HexDirection.values()) {
+			HexPiece n = findPiece(d.move(h));
+			if (p != null && p.getNeighbor(d) != n) return report("the tile is not the same as neighbor");
+			if (n != null && n.getNeighbor(d.reverse()) != p) return report("the neighbor is not point back to the current tail");
+		}
+		if (p != null && terrainHeads != null) {
+			if (p.nextOfTerrain == null || p.nextOfTerrain.prevOfTerrain != p || p.prevOfTerrain.nextOfTerrain != p) return report("terrain index list broken at " + h);
+		}
+		return true;
+	}
+
+	/**
+	 * Check that the chains where a location would be found are cyclic
+	 * (within size steps) and that each piece in them is in the correct chain.
+	 */
+	private boolean chainsWellFormed(HexCoordinate h) {
+		int i = locate(h);
+		if (!chainWellFormed(i)) return false;
+		if (oldTable == null) return true;
+		int j = locate(h, oldTable);
+		return j < migrated || chainWellFormed(table.length + j);
+	}
+
+	/** Return the number of pieces at a location in the (well-formed) chain of bucket i. */
+	private int countIn(int i, HexCoordinate h) {
+		HexPiece start = bucket(i);
+		if (start == null) return 0;
+		int n = 0;
+		HexPiece p = start;
+		do {
+			if (p.location.equals(h)) ++n;
+			p = p.nextInChain;
+		} while (p != start);
+		return n;
+	}
+
+	private boolean chainWellFormed(int i) {
+		HexPiece start = bucket(i);
+		if (start == null) return true;
+		HexPiece p = start;
+		int n = 0;
+		do {
+			if (p == null) return report("Unexpected null in chain");
+			if (p.terrain == null) return report("Null terrain in piece");
+			int correctIndex = i < table.length ? locate(p.location, table) : table.length + locate(p.location, oldTable);
+			if (correctIndex != i) return report("Piece with location " + p.location + " is in wrong chain");
+			if (++n > size) return report("Chain not cyclic");
+			p = p.nextInChain;
+		} while (p != start);
+		return true;
+	}
+
 
 	private HexBoard(boolean ignored) { } // do not change this constructor
 
 	public HexBoard() {
+		this(Resizing.EAGER);
+	}
+
+	/**
+	 * Create an empty hex board that grows in the given way.
+	 * @param r how to grow the table, must not be null
+	 */
+	public HexBoard(Resizing r) {
+		if (r == null) throw new NullPointerException("resizing cannot be null");
 		table = new HexPiece[INITIAL_CAPACITY];
 		size = 0;
 		version = 0;
-		assert wellFormed() : "invariant not estabished in constructor";
+		incremental = r == Resizing.INCREMENTAL;
+		assert checkInvariant(null) : "invariant not estabished in constructor";
 	}
 
 	private void connect(HexPiece p) {
@@ -236,18 +496,18 @@ public class HexBoard extends AbstractCollection<HexBoard.HexPiece> {
 			HexCoordinate h2 = d.move(h);
 			HexPiece p2 = findPiece(h2);
 			if (p2 != null) {
-				p.neighbors[d.ordinal()] = p2;
-				p2.neighbors[d.reverse().ordinal()] = p;
+				p.link(d, p2);
+				p2.link(d.reverse(), p);
 			}
 		}
 	}
 
 	private void disconnect(HexPiece p) {
 		for (HexDirection d : HexDirection.values()) {
-			HexPiece p2 = p.neighbors[d.ordinal()];
+			HexPiece p2 = p.getNeighbor(d);
 			if (p2 != null) {
-				p2.neighbors[d.reverse().ordinal()] = null;
-				p.neighbors[d.ordinal()] = null;
+				p2.link(d.reverse(), null);
+				p.link(d, null);
 			}
 		}
 	}
@@ -255,7 +515,7 @@ public class HexBoard extends AbstractCollection<HexBoard.HexPiece> {
 	// TODO: overrides (required/implementation/efficiency)
 	@Override
 	public boolean add(HexPiece e) {
-		assert wellFormed() : "at the beginning of add";
+		assert checkInvariant(e.getLocation()) : "at the beginning of add";
 
 		if (e.nextInChain != null) { //testL0,L1 不允許將已經加入過某個 HexBoard 的 HexPiece 再次加入到同一個或其他 HexBoard
 			throw new IllegalArgumentException("HexPiece is already part of a HexBoard");
@@ -265,10 +525,11 @@ public class HexBoard extends AbstractCollection<HexBoard.HexPiece> {
 		HexPiece checkingPiece = findPiece(e.getLocation());
 		if (checkingPiece != null) {
 			// 如果已經存在，更新該 HexPiece 的 terrain
-			checkingPiece.terrain = e.getTerrain();
+			publish(setTerrain(checkingPiece, e.getTerrain()));
 			return false;  // 返回 false，表示沒有新增元素，只是更新了已存在的元素
 		}
 		// 如果該位置沒有已存在的 HexPiece，則像原來一樣插入新元素
+		if (oldTable != null) migrate(MIGRATION_STEP);
 		int index = locate(e.getLocation());
 		HexPiece head = table[index];
 
@@ -284,54 +545,725 @@ public class HexBoard extends AbstractCollection<HexBoard.HexPiece> {
 		size++;
 
 		if (size >= table.length) {
-			// 計算新的容量
-			int newCapacity = Primes.nextTwinPrime(table.length * 2);
+			grow();
+		}
+		version++;
+		connect(e);  // 設置該 HexPiece 的 neighbors
+		indexAdd(e);
+
+		assert checkInvariant(e.getLocation()) : "at the end of add";
+		publish(logChange(Change.Kind.ADDED, e, null));
+		return true;
+	}
 
 
-			// 創建新數組並將表格容量加倍
-			HexPiece[] newTable = new HexPiece[newCapacity];
+	@Override // efficiency
+	public boolean contains(Object o) {
+		if (!(o instanceof HexPiece)) return false;
+		HexPiece p = (HexPiece)o;
+		return findPiece(p.location) == p;
+	}
 
-			table = rehash(newTable);
+	@Override // efficiency
+	public boolean remove(Object o) {
+		assert checkInvariant(null) : "at the beginning of remove";
+		if (!contains(o)) return false;
+		removePiece((HexPiece)o);
+		assert checkInvariant(((HexPiece)o).location) : "at the end of remove";
+		return true;
+	}
+
+	/**
+	 * Remove the piece at the given coordinate, if any.
+	 * This takes time proportional to the length of its chain,
+	 * not to the size of the board.
+	 * @param h coordinate to remove, may be null
+	 * @return whether a piece was removed
+	 */
+	public boolean remove(HexCoordinate h) {
+		assert checkInvariant(h) : "at the beginning of remove";
+		HexPiece p = findPiece(h);
+		if (p == null) return false;
+		removePiece(p);
+		assert checkInvariant(h) : "at the end of remove";
+		return true;
+	}
+
+	/**
+	 * Remove a piece known to be on this board: unlink it from its chain
+	 * and from its neighbors and the terrain index.
+	 * @param p piece to remove, must be on this board
+	 */
+	private void removePiece(HexPiece p) {
+		if (!unlink(table, locate(p.location), p)) {
+			boolean found = oldTable != null && unlink(oldTable, locate(p.location, oldTable), p);
+			assert found : "piece to remove not in its chain";
 		}
+		disconnect(p);
+		indexRemove(p);
+		p.nextInChain = null;
+		size--;
 		version++;
-		connect(e);  // 設置該 HexPiece 的 neighbors
+		publish(logChange(Change.Kind.REMOVED, p, p.terrain));
+	}
 
-		assert wellFormed() : "at the end of add";
+	/**
+	 * Remove a piece from the cyclic chain at a[i], if it is there.
+	 * If the piece is the head of the chain, the next piece becomes the head.
+	 * @return whether the piece was found (and removed)
+	 */
+	private static boolean unlink(HexPiece[] a, int i, HexPiece p) {
+		HexPiece head = a[i];
+		if (head == null) return false;
+		HexPiece prev = head;
+		while (prev.nextInChain != p) {
+			prev = prev.nextInChain;
+			if (prev == head) return false;
+		}
+		if (prev == p) a[i] = null; // the only piece in the chain
+		else {
+			prev.nextInChain = p.nextInChain;
+			if (head == p) a[i] = p.nextInChain;
+		}
 		return true;
 	}
 
+	/**
+	 * Add (or change the terrain at) the locations of all the given tiles.
+	 * The table is resized at most once, when the first new location
+	 * would overfill it, to a capacity for all the tiles not yet placed
+	 * (tiles that only change the terrain of an existing piece never resize it),
+	 * and the neighbors of all new pieces are linked in a single pass afterwards.
+	 * As with {@link #add(HexPiece)}, a later tile at the same location
+	 * changes the terrain of the earlier piece.
+	 * (This cannot be an overload of <code>addAll</code>, which takes a collection of pieces.)
+	 * @param tiles tiles to add, must not be null or include null
+	 * @return whether any new piece was added
+	 */
+	public boolean addTiles(Collection<? extends HexTile> tiles) {
+		HexTile[] ts = tiles.toArray(new HexTile[0]);
+		return addTiles(ts.length, (i) -> ts[i].getTerrain(), (i) -> ts[i].getLocation());
+	}
+
+	/**
+	 * Add (or change the terrain at) n locations, as {@link #addTiles(Collection)} does,
+	 * given the terrain and location of each by its index, so that a reader
+	 * can load a board from arrays without making a tile for each.
+	 * @param n number of tiles, not negative
+	 * @param terrain terrain of the tile with each index, must not return null
+	 * @param location location of the tile with each index, must not return null
+	 * (called once for each index, in order)
+	 * @return whether any new piece was added
+	 */
+	boolean addTiles(int n, IntFunction<Terrain> terrain, IntFunction<HexCoordinate> location) {
+		assert checkInvariant(null) : "at the beginning of addTiles";
+		if (oldTable != null) migrate(oldTable.length);
+		HexPiece[] added = new HexPiece[n];
+		int count = 0;
+		List<Change> pending = listeners == null ? null : new ArrayList<>(); // published once the board is consistent
+		for (int i=0; i < n; ++i) {
+			int needed = size + count + n - i; // if every tile left is new
+			HexCoordinate h = location.apply(i);
+			HexPiece existing = findPiece(h);
+			Change c;
+			if (existing != null) {
+				c = setTerrain(existing, terrain.apply(i));
+				if (c != null && pending != null) pending.add(c);
+				continue;
+			}
+			if (size + count + 1 >= table.length) {
+				table = rehash(new HexPiece[Primes.nextTwinPrime(needed * 2)]);
+				rehashes++;
+			}
+			HexPiece e = new HexPiece(terrain.apply(i), h);
+			int index = locate(e.location);
+			HexPiece head = table[index];
+			if (head == null) {
+				e.nextInChain = e;
+				table[index] = e;
+			} else {
+				e.nextInChain = head.nextInChain;
+				head.nextInChain = e;
+			}
+			indexAdd(e); // now, in case a later tile changes its terrain
+			added[count++] = e;
+			c = logChange(Change.Kind.ADDED, e, null);
+			if (c != null && pending != null) pending.add(c);
+		}
+		size += count;
+		for (int i=0; i < count; ++i) {
+			connect(added[i]);
+		}
+		if (count > 0) version++;
+		assert checkInvariant(null) : "at the end of addTiles";
+		if (pending != null) {
+			for (Change c : pending) publish(c);
+		}
+		return count > 0;
+	}
+
+	/**
+	 * A builder for hex boards loaded in bulk, for example from a file.
+	 * Tiles are collected and then placed all at once by {@link #build()},
+	 * which sizes the table once and links neighbors in one pass.
+	 */
+	public static class Builder {
+		private static final int DENSE_FILL = 2; // tiles * DENSE_FILL >= area for a dense board
+		private final List<HexTile> tiles = new ArrayList<>();
+
+		/**
+		 * Add a tile to the board to be built.
+		 * @param t tile to add, must not be null
+		 * @return this builder
+		 */
+		public Builder add(HexTile t) {
+			if (t == null) throw new NullPointerException("tile cannot be null");
+			tiles.add(t);
+			return this;
+		}
+
+		/**
+		 * Add a tile to the board to be built.
+		 * @param t terrain, must not be null
+		 * @param h location, must not be null
+		 * @return this builder
+		 */
+		public Builder add(Terrain t, HexCoordinate h) {
+			return add(new HexTile(t, h));
+		}
+
+		/**
+		 * Return the number of tiles added so far (including duplicates).
+		 * @return number of tiles added
+		 */
+		public int size() {
+			return tiles.size();
+		}
+
+		/**
+		 * Create a new board with all the tiles added to this builder.
+		 * If several tiles have the same location, the last one wins.
+		 * @return new hex board, never null
+		 */
+		public HexBoard build() {
+			HexBoard result = new HexBoard();
+			result.addTiles(tiles);
+			return result;
+		}
+
+		/**
+		 * Create a new board with all the tiles added to this builder,
+		 * choosing a {@link DenseHexBoard} if the tiles fill at least half
+		 * of the rectangle in (a,b) space that bounds them, and otherwise a hex board.
+		 * If several tiles have the same location, the last one wins.
+		 * @return new board, never null
+		 */
+		public AbstractHexBoard buildBest() {
+			if (tiles.isEmpty()) return build();
+			long minA = Long.MAX_VALUE, minB = Long.MAX_VALUE, maxA = Long.MIN_VALUE, maxB = Long.MIN_VALUE;
+			for (HexTile t : tiles) {
+				HexCoordinate h = t.getLocation();
+				minA = Math.min(minA, h.a());
+				maxA = Math.max(maxA, h.a());
+				minB = Math.min(minB, h.b());
+				maxB = Math.max(maxB, h.b());
+			}
+			long width = maxA - minA + 1, height = maxB - minB + 1;
+			if (width * height > Integer.MAX_VALUE / 2 || tiles.size() * DENSE_FILL < width * height) return build();
+			DenseHexBoard result = new DenseHexBoard((int)minA, (int)minB, (int)width, (int)height);
+			result.addTiles(tiles);
+			return result;
+		}
+	}
+
+	/**
+	 * Double (roughly) the capacity of the table.
+	 * In eager mode, everything is rehashed now; in incremental mode,
+	 * the current table becomes the old table to be emptied a few buckets at a time.
+	 */
+	private void grow() {
+		// 計算新的容量, 創建新數組並將表格容量加倍
+		HexPiece[] newTable = new HexPiece[Primes.nextTwinPrime(table.length * 2)];
+		rehashes++;
+		if (!incremental) {
+			table = rehash(newTable);
+			return;
+		}
+		if (oldTable != null) migrate(oldTable.length); // finish the previous resize first
+		oldTable = table;
+		table = newTable;
+		migrated = 0;
+	}
+
+	/**
+	 * Move up to n buckets of the old table into the table.
+	 * @param n maximum number of buckets to move
+	 */
+	private void migrate(int n) {
+		while (n-- > 0 && migrated < oldTable.length) {
+			HexPiece head = oldTable[migrated];
+			oldTable[migrated++] = null;
+			if (head != null) moveChain(head, table);
+		}
+		if (migrated == oldTable.length) {
+			oldTable = null;
+			migrated = 0;
+		}
+	}
 
 	//helper method
 	private HexPiece[] rehash(HexPiece[] newTable) {
 		for (HexPiece head : table) {
-			if (head != null) {
-				HexPiece current = head;
-				do {
-					HexPiece next = current.nextInChain;  // 儲存下一個節點，避免搬家後指標混亂
-					// 重新計算 index
-					int correctIndex = current.location.hashCode() % newTable.length;
-					if (correctIndex < 0) correctIndex += newTable.length;
-
-					// 插入到新 table 的對應 bucket（維持循環鏈結結構）
-					if (newTable[correctIndex] == null) {
-						current.nextInChain = current;
-						newTable[correctIndex] = current;
-					} else {
-						current.nextInChain = newTable[correctIndex].nextInChain;
-						newTable[correctIndex].nextInChain = current;
-					}
-					current = next;
-				} while (current != head);
-			}
+			if (head != null) moveChain(head, newTable);
 		}
 		return newTable;
 	}
 
 	/**
-	 * Return the piece at this hex coordinate (if it exists)
-	 * @param h hex coordinate to look for, may be null
-	 * @return hex piece at this location, or null if no such piece
+	 * Move every piece of the cyclic chain starting at head into the
+	 * correct chain of the given table.
 	 */
+	private static void moveChain(HexPiece head, HexPiece[] newTable) {
+		HexPiece current = head;
+		do {
+			HexPiece next = current.nextInChain;  // 儲存下一個節點，避免搬家後指標混亂
+			// 重新計算 index
+			int correctIndex = locate(current.location, newTable);
+
+			// 插入到新 table 的對應 bucket（維持循環鏈結結構）
+			if (newTable[correctIndex] == null) {
+				current.nextInChain = current;
+				newTable[correctIndex] = current;
+			} else {
+				current.nextInChain = newTable[correctIndex].nextInChain;
+				newTable[correctIndex].nextInChain = current;
+			}
+			current = next;
+		} while (current != head);
+	}
+
+	/// The terrain index
+
+	private void indexAdd(HexPiece p) {
+		if (terrainHeads == null) return;
+		int t = p.terrain.ordinal();
+		HexPiece head = terrainHeads[t];
+		if (head == null) {
+			p.nextOfTerrain = p.prevOfTerrain = p;
+			terrainHeads[t] = p;
+		} else {
+			p.nextOfTerrain = head;
+			p.prevOfTerrain = head.prevOfTerrain;
+			head.prevOfTerrain.nextOfTerrain = p;
+			head.prevOfTerrain = p;
+		}
+		terrainCounts[t]++;
+		indexVersion++;
+	}
+
+	private void indexRemove(HexPiece p) {
+		if (terrainHeads == null) return;
+		int t = p.terrain.ordinal();
+		if (p.nextOfTerrain == p) {
+			terrainHeads[t] = null;
+		} else {
+			p.prevOfTerrain.nextOfTerrain = p.nextOfTerrain;
+			p.nextOfTerrain.prevOfTerrain = p.prevOfTerrain;
+			if (terrainHeads[t] == p) terrainHeads[t] = p.nextOfTerrain;
+		}
+		p.nextOfTerrain = p.prevOfTerrain = null;
+		terrainCounts[t]--;
+		indexVersion++;
+	}
+
+	/**
+	 * Change the terrain of a piece on this board, keeping the index current
+	 * and logging the change.
+	 * @return the change to publish, or null if none
+	 */
+	private Change setTerrain(HexPiece p, Terrain t) {
+		if (p.terrain == t) return null;
+		Terrain old = p.terrain;
+		indexRemove(p);
+		p.terrain = t;
+		indexAdd(p);
+		return logChange(Change.Kind.TERRAIN_CHANGED, p, old);
+	}
+
+	/**
+	 * Build the terrain index, if not already built.
+	 * Once built, it is kept current by every change to the board.
+	 */
+	private void buildIndex() {
+		if (terrainHeads != null) return;
+		assert checkInvariant(null) : "invariant broken before building terrain index";
+		terrainHeads = new HexPiece[Terrain.values().length];
+		terrainCounts = new int[Terrain.values().length];
+		for (int i=0; i < buckets(); ++i) {
+			HexPiece start = bucket(i);
+			if (start == null) continue;
+			HexPiece p = start;
+			do {
+				indexAdd(p);
+				p = p.nextInChain;
+			} while (p != start);
+		}
+		assert checkInvariant(null) : "invariant broken after building terrain index";
+	}
+
+	/**
+	 * Return the number of pieces with the given terrain.
+	 * The first query builds an index (in linear time) that is then kept current,
+	 * after which this takes constant time.
+	 * @param t terrain to count, must not be null
+	 * @return number of pieces with this terrain
+	 */
+	public int countOf(Terrain t) {
+		buildIndex();
+		return terrainCounts[t.ordinal()];
+	}
+
+	/**
+	 * Return a read-only view of the pieces with the given terrain.
+	 * Iterating the view visits only those pieces.
+	 * The first query builds an index (in linear time) that is then kept current.
+	 * @param t terrain to select, must not be null
+	 * @return view of the pieces of this terrain, never null
+	 */
+	public Collection<HexPiece> piecesOf(Terrain t) {
+		return piecesOf(new TerrainSet(t));
+	}
+
+	/**
+	 * Return a read-only view of the pieces whose terrain is in the given set.
+	 * Its size is computed in time proportional to the number of terrains,
+	 * and iterating it visits only the matching pieces.
+	 * @param ts terrains to select, must not be null
+	 * @return view of the pieces with one of these terrains, never null
+	 */
+	public Collection<HexPiece> piecesOf(TerrainSet ts) {
+		if (ts == null) throw new NullPointerException("terrain set cannot be null");
+		buildIndex();
+		return new AbstractCollection<HexPiece>() {
+			@Override // required
+			public int size() {
+				int n = 0;
+				for (Terrain t : ts) n += terrainCounts[t.ordinal()];
+				return n;
+			}
+
+			@Override // efficiency
+			public boolean contains(Object o) {
+				if (!(o instanceof HexPiece)) return false;
+				HexPiece p = (HexPiece)o;
+				return ts.contains(p.terrain) && findPiece(p.location) == p;
+			}
+
+			@Override // required
+			public Iterator<HexPiece> iterator() {
+				return new TerrainIterator(ts);
+			}
+		};
+	}
+
+	private class TerrainIterator implements Iterator<HexPiece> {
+		private final Iterator<Terrain> terrains;
+		private HexPiece head, next;
+		private final int colVersion = indexVersion;
+
+		TerrainIterator(TerrainSet ts) {
+			terrains = ts.iterator();
+			nextList();
+		}
+
+		private void nextList() {
+			next = head = null;
+			while (head == null && terrains.hasNext()) {
+				next = head = terrainHeads[terrains.next().ordinal()];
+			}
+		}
+
+		@Override // required
+		public boolean hasNext() {
+			if (colVersion != indexVersion) throw new ConcurrentModificationException("board changed");
+			return next != null;
+		}
+
+		@Override // required
+		public HexPiece next() {
+			if (!hasNext()) throw new NoSuchElementException("no more");
+			HexPiece result = next;
+			next = next.nextOfTerrain;
+			if (next == head) nextList();
+			return result;
+		}
+	}
+
+	/// The change feed
+
+	/**
+	 * A change made to a hex board: the addition of a piece, the change
+	 * of the terrain of a piece, or the removal of a piece.
+	 * Changes are numbered consecutively by their change version
+	 * (see {@link HexBoard#getChangeVersion()}).
+	 */
+	public static final class Change {
+		/** The kinds of change. */
+		public enum Kind { ADDED, TERRAIN_CHANGED, REMOVED }
+
+		private final int version;
+		private final Kind kind;
+		private final HexCoordinate location;
+		private final Terrain oldTerrain, newTerrain;
+
+		Change(int version, Kind kind, HexCoordinate location, Terrain oldTerrain, Terrain newTerrain) {
+			this.version = version;
+			this.kind = kind;
+			this.location = location;
+			this.oldTerrain = oldTerrain;
+			this.newTerrain = newTerrain;
+		}
+
+		/** Return the change version of the board just after this change. */
+		public int getVersion() { return version; }
+
+		/** Return what kind of change this is. */
+		public Kind getKind() { return kind; }
+
+		/** Return the location of the piece changed. */
+		public HexCoordinate getLocation() { return location; }
+
+		/** Return the terrain before the change, or null if the piece was added. */
+		public Terrain getOldTerrain() { return oldTerrain; }
+
+		/** Return the terrain after the change, or null if the piece was removed. */
+		public Terrain getNewTerrain() { return newTerrain; }
+
+		@Override // implementation
+		public String toString() {
+			return "#" + version + " " + kind + " " + location + " " + oldTerrain + " -> " + newTerrain;
+		}
+	}
+
+	/**
+	 * Record a change that has just been made to a piece: count it,
+	 * and if anyone is interested, create it and add it to the log.
+	 * @param k kind of change
+	 * @param p piece changed
+	 * @param old terrain before the change (ignored for additions)
+	 * @return the change, or null if there is no log and no listener
+	 */
+	private Change logChange(Change.Kind k, HexPiece p, Terrain old) {
+		++changeVersion;
+		if (changeLog == null && listeners == null) return null;
+		Change c = new Change(changeVersion, k, p.location,
+				k == Change.Kind.ADDED ? null : old,
+				k == Change.Kind.REMOVED ? null : p.terrain);
+		if (changeLog != null) changeLog[changeVersion % changeLog.length] = c;
+		return c;
+	}
+
+	private void publish(Change c) {
+		if (c == null || listeners == null) return;
+		for (Consumer<? super Change> l : new ArrayList<>(listeners)) l.accept(c);
+	}
+
+	/**
+	 * Return the number of changes (additions, terrain changes and removals)
+	 * ever made to this board.  Unlike the modification count used by iterators,
+	 * this counts every change, including changes of terrain.
+	 * @return current change version
+	 */
+	public int getChangeVersion() {
+		return changeVersion;
+	}
+
+	/**
+	 * Register a listener to be told of every later change to this board,
+	 * after the change is complete.  Listeners must not change the board.
+	 * For {@link #addTiles(Collection)}, listeners are told of all the changes
+	 * once every tile has been placed.
+	 * @param l listener to add, must not be null
+	 */
+	public void addChangeListener(Consumer<? super Change> l) {
+		if (l == null) throw new NullPointerException("listener cannot be null");
+		if (listeners == null) listeners = new ArrayList<>();
+		listeners.add(l);
+	}
+
+	/**
+	 * Unregister a listener added with {@link #addChangeListener(Consumer)}.
+	 * @param l listener to remove
+	 * @return whether the listener was registered
+	 */
+	public boolean removeChangeListener(Consumer<? super Change> l) {
+		if (listeners == null || !listeners.remove(l)) return false;
+		if (listeners.isEmpty()) listeners = null;
+		return true;
+	}
+
+	/**
+	 * Start keeping a log of the most recent changes, which can be read with
+	 * {@link #changesSince(int)}.  Any existing log is discarded.
+	 * @param capacity number of changes to keep, or zero to stop keeping a log
+	 */
+	public void keepChangeLog(int capacity) {
+		if (capacity < 0) throw new IllegalArgumentException("capacity cannot be negative: " + capacity);
+		changeLog = capacity == 0 ? null : new Change[capacity];
+		logStart = changeVersion;
+	}
+
+	/**
+	 * Return the changes made after the given change version, oldest first.
+	 * If the log (see {@link #keepChangeLog(int)}) does not reach back that far,
+	 * return null: the caller must then look at the whole board.
+	 * @param v change version previously returned by {@link #getChangeVersion()}
+	 * @return new list of the later changes, or null if they are not all in the log
+	 */
+	public List<Change> changesSince(int v) {
+		if (v < 0 || v > changeVersion) throw new IllegalArgumentException("no such change version: " + v);
+		if (v == changeVersion) return new ArrayList<>();
+		if (changeLog == null || v < logStart || changeVersion - v > changeLog.length) return null;
+		List<Change> result = new ArrayList<>(changeVersion - v);
+		for (int i = v+1; i <= changeVersion; ++i) result.add(changeLog[i % changeLog.length]);
+		return result;
+	}
+
+	/**
+	 * Return the patch that turns this board as it was at the given change version
+	 * into this board as it is now, using the change log (see {@link #keepChangeLog(int)}).
+	 * This takes time linear in the number of changes since then, rather than
+	 * in the size of the board as {@link HexBoardPatch#diff(AbstractHexBoard, AbstractHexBoard)} does.
+	 * @param v change version previously returned by {@link #getChangeVersion()}
+	 * @return patch since that version, or null if the log does not reach back that far
+	 */
+	public HexBoardPatch diffSince(int v) {
+		List<Change> changes = changesSince(v);
+		if (changes == null) return null;
+		return HexBoardPatch.fromChanges(changes);
+	}
+
+	/**
+	 * Change this board as described by a patch: afterwards, each removed location
+	 * has no piece, and each added or changed tile has a piece with its terrain.
+	 * The additions are made in bulk as by {@link #addTiles(Collection)}.
+	 * @param patch patch to apply, must not be null
+	 */
+	public void apply(HexBoardPatch patch) {
+		for (HexCoordinate h : patch.getRemoved()) remove(h);
+		List<HexTile> tiles = new ArrayList<>(patch.getAdded().size() + patch.getChanged().size());
+		tiles.addAll(patch.getAdded());
+		tiles.addAll(patch.getChanged());
+		addTiles(tiles);
+	}
+
+	/// Connectivity
+
+	/**
+	 * Return an index of which pieces are connected through pieces with the given terrains.
+	 * The first request for a set of terrains builds the index in linear time;
+	 * later requests return the same index, which is kept current as the board changes.
+	 * Once an index exists, {@link Search} uses it to reject unreachable goals at once.
+	 * @param ts passable terrains, must not be null
+	 * @return connectivity index for these terrains, never null
+	 */
+	public ConnectivityIndex connectivity(TerrainSet ts) {
+		if (ts == null) throw new NullPointerException("terrain set cannot be null");
+		if (connectivity == null) connectivity = new HashMap<>();
+		ConnectivityIndex result = connectivity.get(ts);
+		if (result == null) {
+			result = new ConnectivityIndex(this, ts);
+			connectivity.put(ts, result);
+		}
+		return result;
+	}
+
+	@Override // decorate
+	ConnectivityIndex existingConnectivity(TerrainSet ts) {
+		if (connectivity == null) return null;
+		return connectivity.get(ts);
+	}
+
+	/**
+	 * Statistics about the distribution of pieces in the hash table
+	 * at the time they were computed.
+	 */
+	public static class Statistics {
+		private final int size, buckets, maxChain, rehashes;
+		private final int[] chains;
+
+		Statistics(int size, int buckets, int[] chains, int rehashes) {
+			this.size = size;
+			this.buckets = buckets;
+			this.chains = chains;
+			this.rehashes = rehashes;
+			int max = 0;
+			for (int i=0; i < chains.length; ++i) if (chains[i] > 0) max = i;
+			maxChain = max;
+		}
+
+		/** Return the number of pieces. */
+		public int getSize() { return size; }
+
+		/** Return the number of buckets (including an old table being migrated). */
+		public int getBuckets() { return buckets; }
+
+		/** Return the length of the longest chain. */
+		public int getMaxChain() { return maxChain; }
+
+		/** Return the number of times the table has grown. */
+		public int getRehashCount() { return rehashes; }
+
+		/** Return the ratio of pieces to buckets. */
+		public double getLoadFactor() { return (double)size / buckets; }
+
+		/**
+		 * Return the number of buckets with a chain of the given length.
+		 * @param length chain length (0 for empty buckets)
+		 * @return number of such buckets
+		 */
+		public int getChainCount(int length) {
+			if (length < 0 || length >= chains.length) return 0;
+			return chains[length];
+		}
+
+		@Override // implementation
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append("size=").append(size).append(" buckets=").append(buckets);
+			sb.append(String.format(" load=%.3f", getLoadFactor()));
+			sb.append(" maxChain=").append(maxChain).append(" rehashes=").append(rehashes);
+			sb.append(" chains:");
+			for (int i=0; i <= maxChain; ++i) sb.append(' ').append(i).append('=').append(chains[i]);
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Compute statistics about the hash table: a histogram of chain lengths,
+	 * the longest chain, the load factor and the number of rehashes so far.
+	 * This takes time linear in the size of the table.
+	 * @return statistics, never null
+	 */
+	public Statistics getStatistics() {
+		int[] chains = new int[8];
+		for (int i=0; i < buckets(); ++i) {
+			int n = 0;
+			HexPiece start = bucket(i);
+			if (start != null) {
+				HexPiece p = start;
+				do {
+					++n;
+					p = p.nextInChain;
+				} while (p != start);
+			}
+			if (n >= chains.length) chains = Arrays.copyOf(chains, Math.max(n+1, chains.length*2));
+			chains[n]++;
+		}
+		return new Statistics(size, buckets(), chains, rehashes);
+	}
+
+	@Override // required
 	public HexPiece get(HexCoordinate h) {
 		return findPiece(h);
 	}
@@ -365,9 +1297,9 @@ public class HexBoard extends AbstractCollection<HexBoard.HexPiece> {
 			current = null;
 			start = null;
 			count++;
-			while (count < table.length) {
-				if (table[count] != null) {
-					current = table[count];
+			while (count < buckets()) {
+				if (bucket(count) != null) {
+					current = bucket(count);
 					start = current;
 					return;
 				}
@@ -402,33 +1334,9 @@ public class HexBoard extends AbstractCollection<HexBoard.HexPiece> {
 			if (!removeOK) throw new IllegalStateException();
 			removeOK = false;
 
-			disconnect(lastReturned); // 斷開 neighbors
-
-			HexPiece head = table[lastIndex]; // 取得該元素所在 bucket 的頭節點
-
-			if (head == lastReturned && head.nextInChain == head) {
-				// 只有一個節點
-				head.nextInChain=null;
-				table[lastIndex] = null;
-			} else {
-				HexPiece prev = head;
-				while (prev.nextInChain != lastReturned) {
-					prev = prev.nextInChain;
-				}
-				prev.nextInChain = lastReturned.nextInChain;
-				if (head == lastReturned) {
-					table[lastIndex] = lastReturned.nextInChain; // 如果刪除的是頭節點，要更新 bucket 的頭
-					table[lastIndex].nextInChain = table[lastIndex].nextInChain.nextInChain;
-					lastReturned.nextInChain=null;
-				}
-			}
-			if (current == lastReturned) { // 如果 current 剛好是被刪除的節點，重設 current & start (test89)
-				current = null;
-				start = null;
-			}
-			lastReturned.nextInChain = null;
-			size--;
-			version++;
+			boolean wasStart = start == lastReturned;
+			removePiece(lastReturned);
+			if (wasStart) start = bucket(lastIndex); // the chain (still holding current) has a new head
 			colVersion = version;
 			lastReturned = null;
 			
@@ -439,6 +1347,106 @@ public class HexBoard extends AbstractCollection<HexBoard.HexPiece> {
 	// Our solution keeps "current" and "next"
 	// No need to write a data structure invariant for the iterator.
 
+	/**
+	 * Return a spliterator over the pieces of this board that splits
+	 * by halving ranges of buckets, so that parallel streams over a large board
+	 * divide the work evenly.  The spliterator is fail-fast: it throws
+	 * {@link ConcurrentModificationException} if the board is changed
+	 * other than through it.
+	 * @return new spliterator, never null
+	 */
+	@Override // efficiency
+	public Spliterator<HexPiece> spliterator() {
+		return new MySpliterator(0, buckets(), size, true);
+	}
+
+	private class MySpliterator implements Spliterator<HexPiece> {
+		private int index; // next bucket to start
+		private final int fence; // one past the last bucket
+		private HexPiece current, start; // next piece in a chain already started, and that chain's head
+		private long est; // remaining pieces, counted down as they are visited
+		private boolean sized; // whether est is exact (true only if never split)
+		private final int colVersion = version;
+
+		MySpliterator(int lo, int hi, long est, boolean sized) {
+			index = lo;
+			fence = hi;
+			this.est = est;
+			this.sized = sized;
+		}
+
+		private void checkVersion() {
+			if (version != colVersion) throw new ConcurrentModificationException("board changed");
+		}
+
+		@Override // required
+		public boolean tryAdvance(Consumer<? super HexPiece> action) {
+			if (action == null) throw new NullPointerException("action cannot be null");
+			checkVersion();
+			while (current == null && index < fence) {
+				current = start = bucket(index++);
+			}
+			if (current == null) return false;
+			HexPiece p = current;
+			current = p.nextInChain == start ? null : p.nextInChain;
+			if (est > 0) --est;
+			action.accept(p);
+			checkVersion();
+			return true;
+		}
+
+		@Override // efficiency
+		public void forEachRemaining(Consumer<? super HexPiece> action) {
+			if (action == null) throw new NullPointerException("action cannot be null");
+			checkVersion();
+			while (current != null) {
+				HexPiece p = current;
+				current = p.nextInChain == start ? null : p.nextInChain;
+				action.accept(p);
+			}
+			while (index < fence) {
+				checkVersion();
+				HexPiece head = bucket(index++);
+				if (head == null) continue;
+				HexPiece p = head;
+				do {
+					HexPiece next = p.nextInChain;
+					action.accept(p);
+					p = next;
+				} while (p != head);
+			}
+			est = 0;
+			checkVersion();
+		}
+
+		@Override // required
+		public Spliterator<HexPiece> trySplit() {
+			int mid = (index + fence) >>> 1;
+			if (mid <= index) return null;
+			est >>>= 1;
+			sized = false;
+			MySpliterator prefix = new MySpliterator(index, mid, est, false);
+			index = mid;
+			// a chain already started precedes the prefix buckets, so it goes with them
+			if (current != null) {
+				prefix.current = current;
+				prefix.start = start;
+				current = start = null;
+			}
+			return prefix;
+		}
+
+		@Override // required
+		public long estimateSize() {
+			return est;
+		}
+
+		@Override // required
+		public int characteristics() {
+			return (sized ? SIZED : 0) | DISTINCT | NONNULL;
+		}
+	}
+
 
 	/**
 	 * Used for testing the invariant.  Do not change this code.
@@ -461,7 +1469,7 @@ public class HexBoard extends AbstractCollection<HexBoard.HexPiece> {
 			 * @param p piece to use, may be null
 			 */
 			public void setNeighbor(HexDirection d, HexPiece p) {
-				this.neighbors[d.ordinal()] = p;
+				link(d, p);
 			}
 
 			/**
@@ -0,0 +1,888 @@
+package edu.uwm.cs351;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import edu.uwm.cs351.util.BucketWorklist;
+import edu.uwm.cs351.util.FIFOWorklist;
+import edu.uwm.cs351.util.HeapWorklist;
+import edu.uwm.cs351.util.PairingHeapWorklist;
+import edu.uwm.cs351.util.Worklist;
+
+/**
+ * Simple timing harness for the hex board data structures.
+ * Usage: [<code>scenario</code> ...] where each scenario is one of the names
+ * printed when no arguments are given.  With no arguments, every scenario is run.
+ * Times are wall-clock and include JIT warm-up, so only the trend
+ * (how the cost per operation changes as the board grows) is meaningful.
+ */
+public class HexBoardBenchmark {
+
+	private static final int[] SIZES = { 1_000, 10_000, 100_000, 200_000 };
+	private static final long SEED = 351L;
+	private static final int MAX_PICKS = 1_000; // random pairs tried before a search scenario gives up
+
+	public static void main(String[] args) {
+		List<String> scenarios = new ArrayList<>();
+		for (String a : args) scenarios.add(a);
+		if (scenarios.isEmpty()) {
+			System.out.println("Scenarios: lookup concurrent stress resize chains fileio parallel remove diff connectivity footprint generate paged astar worklists costs");
+			scenarios.add("lookup");
+			scenarios.add("concurrent");
+			scenarios.add("stress");
+			scenarios.add("resize");
+			scenarios.add("chains");
+			scenarios.add("fileio");
+			scenarios.add("parallel");
+			scenarios.add("remove");
+			scenarios.add("diff");
+			scenarios.add("connectivity");
+			scenarios.add("footprint");
+			scenarios.add("generate");
+			scenarios.add("paged");
+			scenarios.add("astar");
+			scenarios.add("worklists");
+			scenarios.add("costs");
+		}
+		for (String s : scenarios) {
+			switch (s) {
+			case "lookup": lookup(); break;
+			case "concurrent": concurrent(); break;
+			case "stress": stress(); break;
+			case "resize": resize(); break;
+			case "chains": chains(); break;
+			case "fileio": fileio(); break;
+			case "parallel": parallel(); break;
+			case "remove": remove(); break;
+			case "diff": diff(); break;
+			case "connectivity": connectivity(); break;
+			case "footprint": footprint(); break;
+			case "generate": generate(); break;
+			case "paged": paged(); break;
+			case "astar": astar(); break;
+			case "worklists": worklists(); break;
+			case "costs": costs(); break;
+			default:
+				System.out.println("Unknown scenario: " + s);
+			}
+		}
+	}
+
+	/**
+	 * Return a square-ish patch of n distinct coordinates in random order.
+	 * @param n number of coordinates
+	 * @param r source of randomness
+	 * @return array of distinct coordinates
+	 */
+	static HexCoordinate[] coordinates(int n, Random r) {
+		int side = (int)Math.ceil(Math.sqrt(n));
+		HexCoordinate[] result = new HexCoordinate[n];
+		for (int i=0; i < n; ++i) {
+			int b = i / side;
+			result[i] = new HexCoordinate(i % side + b/2, b);
+		}
+		for (int i=n-1; i > 0; --i) {
+			int j = r.nextInt(i+1);
+			HexCoordinate t = result[i];
+			result[i] = result[j];
+			result[j] = t;
+		}
+		return result;
+	}
+
+	static Terrain randomTerrain(Random r) {
+		Terrain[] all = Terrain.values();
+		return all[r.nextInt(all.length)];
+	}
+
+	private static void report(String what, int n, long nanos, int ops) {
+		System.out.printf("%-28s n=%-9d %8.1f ns/op%n", what, n, (double)nanos/ops);
+	}
+
+	/**
+	 * Time add and get as the board grows.  With constant expected cost
+	 * per lookup, ns/op should stay roughly flat across sizes.
+	 */
+	private static void lookup() {
+		for (int n : SIZES) {
+			Random r = new Random(SEED);
+			HexCoordinate[] hs = coordinates(n, r);
+			HexBoard b = new HexBoard();
+			long start = System.nanoTime();
+			for (HexCoordinate h : hs) {
+				b.add(new HexBoard.HexPiece(randomTerrain(r), h));
+			}
+			report("HexBoard.add", n, System.nanoTime() - start, n);
+
+			int found = 0;
+			start = System.nanoTime();
+			for (int i=0; i < n; ++i) {
+				if (b.get(hs[(i * 7919) % n]) != null) ++found;
+			}
+			report("HexBoard.get", n, System.nanoTime() - start, n);
+			if (found != n) System.out.println("  (lookup failure: found " + found + ")");
+		}
+	}
+
+	/**
+	 * Stress a concurrent board with readers that walk neighbors while
+	 * writers add and remove pieces, checking that every read is consistent,
+	 * then measure throughput as the mix of readers and writers changes.
+	 */
+	private static void concurrent() {
+		final int side = 300;
+		final int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+		for (int writers = 0; writers <= threads; writers += Math.max(1, threads/4)) {
+			final ConcurrentHexBoard b = new ConcurrentHexBoard();
+			for (int a=0; a < side; ++a) {
+				for (int c=0; c < side; ++c) {
+					b.add(new HexBoard.HexPiece(Terrain.LAND, new HexCoordinate(a, c)));
+				}
+			}
+			final AtomicBoolean stop = new AtomicBoolean();
+			final AtomicLong reads = new AtomicLong(), writes = new AtomicLong();
+			final AtomicReference<Throwable> failure = new AtomicReference<>();
+			List<Thread> ts = new ArrayList<>();
+			for (int i=0; i < threads; ++i) {
+				final boolean writer = i < writers;
+				final Random r = new Random(SEED + i);
+				ts.add(new Thread(() -> {
+					try {
+						long n = 0;
+						while (!stop.get()) {
+							// writers only touch the right half; readers walk anywhere
+							HexCoordinate h = new HexCoordinate(r.nextInt(side), r.nextInt(side));
+							if (writer) {
+								HexCoordinate w = new HexCoordinate(side/2 + h.a()/2, h.b());
+								if (r.nextBoolean()) b.add(new HexBoard.HexPiece(randomTerrain(r), w));
+								else b.remove(w);
+							} else {
+								HexBoard.HexPiece p = b.get(h);
+								for (int k=0; p != null && k < 8; ++k) {
+									HexBoard.HexPiece q = p.move(HexDirection.values()[r.nextInt(6)]);
+									if (q != null && p.getLocation().distance(q.getLocation()) != 1) {
+										throw new AssertionError("bad neighbor " + p + " -> " + q);
+									}
+									if (q != null) p = q;
+								}
+								if (h.a() < side/2 && b.get(h) == null) {
+									throw new AssertionError("lost stable piece at " + h);
+								}
+							}
+							++n;
+						}
+						(writer ? writes : reads).addAndGet(n);
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					}
+				}));
+			}
+			for (Thread t : ts) t.start();
+			try {
+				Thread.sleep(1000);
+				stop.set(true);
+				for (Thread t : ts) t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if (failure.get() != null) throw new AssertionError("concurrent failure", failure.get());
+			Set<HexCoordinate> seen = new HashSet<>();
+			for (HexBoard.HexPiece p : b) {
+				if (!seen.add(p.getLocation()) || b.get(p.getLocation()) != p) {
+					throw new AssertionError("inconsistent after concurrent run: " + p);
+				}
+			}
+			if (seen.size() != b.size()) throw new AssertionError("size " + b.size() + " but iterated " + seen.size());
+			System.out.printf("concurrent %2d readers %2d writers: %,12d reads/s %,12d writes/s%n",
+					threads - writers, writers, reads.get(), writes.get());
+		}
+	}
+
+	/**
+	 * Check a concurrent board under contention, failing (with an error, and so
+	 * a non-zero exit status) on a lost update, a torn or inconsistent read,
+	 * or a thread that does not finish, as in a deadlock.
+	 * The upper half of the board never changes, and its terrains are known.
+	 * Each writer owns some rows of the lower half, and keeps a model of what
+	 * they should hold, checking every result against it.  Readers check each piece
+	 * they reach, and iterate over the whole board.  The lower half starts empty,
+	 * so the table grows while the threads run.
+	 */
+	private static void stress() {
+		final int side = 200, rounds = 5;
+		final long runMillis = 1000, joinMillis = 10_000;
+		final int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+		final int writers = threads / 2;
+		final Terrain[] all = Terrain.values();
+		for (int round = 0; round < rounds; ++round) {
+			final ConcurrentHexBoard b = new ConcurrentHexBoard();
+			for (int a=0; a < side; ++a) {
+				for (int c=0; c < side/2; ++c) {
+					b.add(new HexBoard.HexPiece(all[(a*31 + c) % all.length], new HexCoordinate(a, c)));
+				}
+			}
+			final int stable = b.size();
+			// model[a][c] is the terrain a writer last put at (a,c), or null;
+			// each entry is written only by the writer that owns row c
+			final Terrain[][] model = new Terrain[side][side];
+			final AtomicBoolean stop = new AtomicBoolean();
+			final AtomicReference<Throwable> failure = new AtomicReference<>();
+			List<Thread> ts = new ArrayList<>();
+			for (int i=0; i < threads; ++i) {
+				final int id = i;
+				final Random r = new Random(SEED + round * threads + i);
+				Runnable body = id < writers ? () -> {
+					int rows = (side/2 - id + writers - 1) / writers;
+					while (!stop.get()) {
+						int a = r.nextInt(side), c = side/2 + id + writers * r.nextInt(rows);
+						HexCoordinate h = new HexCoordinate(a, c);
+						Terrain t = all[r.nextInt(all.length)];
+						Terrain old = model[a][c];
+						switch (r.nextInt(4)) {
+						case 0:
+							if (b.add(new HexBoard.HexPiece(t, h)) != (old == null)) throw new AssertionError("add at " + h + " disagrees with " + old);
+							model[a][c] = t;
+							break;
+						case 1:
+							if (b.remove(h) != (old != null)) throw new AssertionError("remove at " + h + " disagrees with " + old);
+							model[a][c] = null;
+							break;
+						case 2:
+							if (b.remove(new HexBoard.HexPiece(t, h)) != (old == t)) throw new AssertionError("remove of " + t + h + " disagrees with " + old);
+							if (old == t) model[a][c] = null;
+							break;
+						default:
+							if (b.contains(new HexBoard.HexPiece(t, h)) != (old == t)) throw new AssertionError("contains " + t + h + " disagrees with " + old);
+						}
+						HexBoard.HexPiece p = b.get(h);
+						Terrain now = p == null ? null : p.getTerrain();
+						if (now != model[a][c]) throw new AssertionError("lost update at " + h + ": " + now + " instead of " + model[a][c]);
+					}
+				} : () -> {
+					for (long n = 0; !stop.get(); ++n) {
+						HexCoordinate h = new HexCoordinate(r.nextInt(side), r.nextInt(side));
+						HexBoard.HexPiece p = b.get(h);
+						if (h.b() < side/2 && (p == null || p.getTerrain() != all[(h.a()*31 + h.b()) % all.length])) {
+							throw new AssertionError("lost stable piece at " + h + ": " + p);
+						}
+						for (int k=0; p != null && k < 8; ++k) {
+							HexDirection d = HexDirection.values()[r.nextInt(6)];
+							HexBoard.HexPiece q = p.move(d);
+							if (q != null && (!q.getLocation().equals(d.move(p.getLocation())) || q.getTerrain() == null)) {
+								throw new AssertionError("torn read " + p + " -> " + q);
+							}
+							if (q != null) p = q;
+						}
+						if (n % 1000 == 0) {
+							Set<HexCoordinate> seen = new HashSet<>();
+							int upper = 0;
+							for (HexBoard.HexPiece q : b) {
+								if (!seen.add(q.getLocation())) throw new AssertionError("iterated twice: " + q);
+								if (q.getLocation().b() < side/2) ++upper;
+							}
+							if (upper != stable) throw new AssertionError("iterated " + upper + " stable pieces of " + stable);
+						}
+					}
+				};
+				ts.add(new Thread(() -> {
+					try {
+						body.run();
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+						stop.set(true);
+					}
+				}, (id < writers ? "writer-" : "reader-") + id));
+			}
+			for (Thread t : ts) {
+				t.setDaemon(true); // so that a deadlocked thread does not keep the program running
+				t.start();
+			}
+			try {
+				Thread.sleep(runMillis);
+				stop.set(true);
+				long deadline = System.currentTimeMillis() + joinMillis;
+				for (Thread t : ts) {
+					t.join(Math.max(1, deadline - System.currentTimeMillis()));
+					if (t.isAlive()) {
+						AssertionError e = new AssertionError(t.getName() + " did not finish (deadlock?)");
+						e.setStackTrace(t.getStackTrace());
+						throw e;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if (failure.get() != null) throw new AssertionError("stress failure", failure.get());
+			int expected = stable;
+			for (int a=0; a < side; ++a) {
+				for (int c=side/2; c < side; ++c) {
+					HexBoard.HexPiece p = b.get(new HexCoordinate(a, c));
+					if ((p == null ? null : p.getTerrain()) != model[a][c]) throw new AssertionError("lost update at <" + a + "," + c + ">");
+					if (model[a][c] != null) ++expected;
+				}
+			}
+			int iterated = 0;
+			for (@SuppressWarnings("unused") HexBoard.HexPiece p : b) ++iterated;
+			if (b.size() != expected || iterated != expected) {
+				throw new AssertionError("size " + b.size() + " and " + iterated + " iterated, but expected " + expected);
+			}
+			System.out.printf("stress round %d: %d readers, %d writers, %,d pieces: ok%n", round, threads - writers, writers, expected);
+		}
+	}
+
+	/**
+	 * Compare the latency distribution of single additions with eager
+	 * and incremental resizing.  Eager resizing shows up in the tail
+	 * (p99.9 and max); incremental resizing should flatten it.
+	 * Collector pauses would otherwise dominate the tail (unless the young
+	 * generation holds the whole board, e.g. <code>-Xmn3g</code>), so the pieces are
+	 * made before timing starts, leaving the tables as the only allocation,
+	 * and the additions during which a collection ran are reported separately.
+	 */
+	private static void resize() {
+		final int n = 2_000_000;
+		for (HexBoard.Resizing mode : HexBoard.Resizing.values()) {
+			Random r = new Random(SEED);
+			HexBoard.HexPiece[] pieces = new HexBoard.HexPiece[n];
+			int i = 0;
+			for (HexCoordinate h : coordinates(n, r)) pieces[i++] = new HexBoard.HexPiece(Terrain.LAND, h);
+			System.gc();
+			HexBoard b = new HexBoard(mode);
+			long[] times = new long[n];
+			long[] paused = new long[n];
+			int clean = 0, interrupted = 0;
+			long collections = collections(), collectionTime = collectionTime();
+			long seen = collections;
+			for (HexBoard.HexPiece p : pieces) {
+				long start = System.nanoTime();
+				b.add(p);
+				long t = System.nanoTime() - start;
+				// a pause makes an addition slow, so only slow ones need checking
+				if (t >= SLOW_ADD && collections() != seen) {
+					seen = collections();
+					paused[interrupted++] = t;
+				} else times[clean++] = t;
+			}
+			histogram("add (" + mode + ")", Arrays.copyOf(times, clean));
+			System.out.printf("    %,d collections (%,d ms) during the run; %,d additions waited for one, worst %,dns%n",
+					collections() - collections, collectionTime() - collectionTime, interrupted,
+					Arrays.stream(paused, 0, interrupted).max().orElse(0));
+		}
+	}
+
+	private static final long SLOW_ADD = 20_000; // ns
+
+	private static long collections() {
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) total += gc.getCollectionCount();
+		return total;
+	}
+
+	private static long collectionTime() {
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) total += gc.getCollectionTime();
+		return total;
+	}
+
+	static void histogram(String what, long[] times) {
+		Arrays.sort(times);
+		int n = times.length;
+		System.out.printf("%-20s p50=%,dns p99=%,dns p99.9=%,dns max=%,dns%n", what,
+				times[n/2], times[(int)(n*0.99)], times[(int)(n*0.999)], times[n-1]);
+		int i = 0;
+		for (long bound = 128; i < n; bound *= 4) {
+			int count = 0;
+			while (i < n && times[i] < bound) { ++count; ++i; }
+			if (count > 0) System.out.printf("    < %,14d ns: %,d%n", bound, count);
+		}
+	}
+
+	/**
+	 * Print hash table statistics for wide boards, boards with negative
+	 * coordinates, and random boards, to check the distribution of chains.
+	 */
+	private static void chains() {
+		int[][] shapes = { {1000, 200, 0}, {2000, 100, -1000}, {300, 300, -150} };
+		for (int[] shape : shapes) {
+			HexBoard b = new HexBoard();
+			for (int a=0; a < shape[0]; ++a) {
+				for (int c=0; c < shape[1]; ++c) {
+					b.add(new HexBoard.HexPiece(Terrain.LAND, new HexCoordinate(a + shape[2], c + shape[2])));
+				}
+			}
+			System.out.println(shape[0] + "x" + shape[1] + " from " + shape[2] + ": " + b.getStatistics());
+		}
+	}
+
+	/**
+	 * Compare loading a board from the text tile format with loading
+	 * it from the binary format of {@link HexBoardFile}.
+	 */
+	private static void fileio() {
+		final int n = 1_000_000;
+		Random r = new Random(SEED);
+		HexBoard.Builder builder = new HexBoard.Builder();
+		for (HexCoordinate h : coordinates(n, r)) builder.add(randomTerrain(r), h);
+		HexBoard b = builder.build();
+		Path text = null, binary = null;
+		try {
+			text = Files.createTempFile("board", ".txt");
+			binary = Files.createTempFile("board", ".hexb");
+			try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(text))) {
+				for (HexBoard.HexPiece p : b) pw.println(p.asTile());
+			}
+			HexBoardFile.write(b, binary);
+			System.out.printf("text file %,d bytes, binary file %,d bytes%n", Files.size(text), Files.size(binary));
+
+			long start = System.nanoTime();
+			List<HexTile> tiles = new ArrayList<>();
+			try (BufferedReader br = Files.newBufferedReader(text)) {
+				String line;
+				while ((line = br.readLine()) != null) tiles.add(HexTile.fromString(line));
+			}
+			report("parse text (tiles only)", tiles.size(), System.nanoTime() - start, n);
+			HexBoard fromText = new HexBoard();
+			fromText.addTiles(tiles);
+			report("load text -> HexBoard", fromText.size(), System.nanoTime() - start, n);
+
+			start = System.nanoTime();
+			HexBoard fromBinary = HexBoardFile.read(binary);
+			report("load binary -> HexBoard", fromBinary.size(), System.nanoTime() - start, n);
+
+			start = System.nanoTime();
+			FrozenHexBoard frozen = HexBoardFile.readFrozen(binary);
+			report("load binary -> Frozen", frozen.size(), System.nanoTime() - start, n);
+		} catch (IOException e) {
+			System.out.println("fileio failed: " + e);
+		} finally {
+			try {
+				if (text != null) Files.deleteIfExists(text);
+				if (binary != null) Files.deleteIfExists(binary);
+			} catch (IOException e) {
+				System.out.println("could not delete temporary file: " + e);
+			}
+		}
+	}
+
+	/**
+	 * Compare a sequential and a parallel stream computing terrain counts
+	 * over a large board, checking that they agree.
+	 */
+	private static void parallel() {
+		final int n = 2_000_000;
+		Random r = new Random(SEED);
+		HexBoard.Builder builder = new HexBoard.Builder();
+		for (HexCoordinate h : coordinates(n, r)) builder.add(randomTerrain(r), h);
+		HexBoard b = builder.build();
+		Map<Terrain,Long> expected = null;
+		for (int round=0; round < 3; ++round) {
+			long start = System.nanoTime();
+			Map<Terrain,Long> seq = b.stream().collect(Collectors.groupingBy(HexBoard.HexPiece::getTerrain, Collectors.counting()));
+			report("sequential terrain counts", n, System.nanoTime() - start, n);
+			start = System.nanoTime();
+			Map<Terrain,Long> par = b.parallelStream().collect(Collectors.groupingBy(HexBoard.HexPiece::getTerrain, Collectors.counting()));
+			report("parallel terrain counts", n, System.nanoTime() - start, n);
+			if (expected == null) expected = seq;
+			if (!seq.equals(expected) || !par.equals(expected)) System.out.println("  (counts disagree: " + seq + " vs " + par + ")");
+		}
+	}
+
+	/**
+	 * Time removing pieces by coordinate, which should cost about the same
+	 * at every size, against removing a few by scanning the board
+	 * (as the inherited collection operations do).
+	 */
+	private static void remove() {
+		final int scans = 100;
+		for (int n : SIZES) {
+			Random r = new Random(SEED);
+			HexCoordinate[] hs = coordinates(n, r);
+			HexBoard b = new HexBoard();
+			for (HexCoordinate h : hs) b.add(new HexBoard.HexPiece(randomTerrain(r), h));
+
+			long start = System.nanoTime();
+			for (int i=0; i < scans; ++i) {
+				Iterator<HexBoard.HexPiece> it = b.iterator();
+				while (it.hasNext()) {
+					if (it.next().getLocation().equals(hs[i])) {
+						it.remove();
+						break;
+					}
+				}
+			}
+			report("remove by scanning", n, System.nanoTime() - start, scans);
+
+			int removed = 0;
+			start = System.nanoTime();
+			for (int i=scans; i < n; ++i) {
+				if (b.remove(hs[i])) ++removed;
+			}
+			report("HexBoard.remove(coordinate)", n, System.nanoTime() - start, n - scans);
+			if (removed != n - scans || !b.isEmpty()) System.out.println("  (removal failure: removed " + removed + ")");
+		}
+	}
+
+	/**
+	 * Compare computing the patch between two copies of a large board by scanning
+	 * them with computing it from the change log, after a few edits,
+	 * and check that applying the patch makes the copies agree.
+	 */
+	private static void diff() {
+		final int n = 1_000_000;
+		Random r = new Random(SEED);
+		HexCoordinate[] hs = coordinates(n, r);
+		List<HexTile> tiles = new ArrayList<>();
+		for (HexCoordinate h : hs) tiles.add(new HexTile(randomTerrain(r), h));
+		HexBoard master = new HexBoard(), replica = new HexBoard();
+		master.addTiles(tiles);
+		replica.addTiles(tiles);
+		master.keepChangeLog(1 << 16);
+		for (int edits : new int[] { 10, 1000, 10_000 }) {
+			int since = master.getChangeVersion();
+			for (int i=0; i < edits; ++i) {
+				HexCoordinate h = hs[r.nextInt(n)];
+				switch (r.nextInt(3)) {
+				case 0: master.remove(h); break;
+				case 1: master.add(new HexBoard.HexPiece(randomTerrain(r), h)); break;
+				default: master.add(new HexBoard.HexPiece(randomTerrain(r), new HexCoordinate(-1 - r.nextInt(1000), r.nextInt(1000))));
+				}
+			}
+			long start = System.nanoTime();
+			HexBoardPatch full = HexBoardPatch.diff(replica, master);
+			report("diff by scanning", edits, System.nanoTime() - start, 1);
+			start = System.nanoTime();
+			HexBoardPatch logged = master.diffSince(since);
+			report("diff from change log", edits, System.nanoTime() - start, 1);
+			start = System.nanoTime();
+			replica.apply(logged);
+			report("apply", edits, System.nanoTime() - start, 1);
+			if (full.size() != logged.size() || !HexBoardPatch.diff(replica, master).isEmpty()) {
+				System.out.println("  (patches disagree: " + full + " vs " + logged + ")");
+			}
+		}
+	}
+
+	/**
+	 * Time searches between random points of a board with many lakes
+	 * (so that most goals are unreachable), without and then with
+	 * a connectivity index.
+	 */
+	private static void connectivity() {
+		final int side = 400, queries = 200;
+		Random r = new Random(SEED);
+		HexBoard.Builder builder = new HexBoard.Builder();
+		for (int a=0; a < side; ++a) {
+			for (int c=0; c < side; ++c) {
+				builder.add(r.nextInt(100) < 55 ? Terrain.WATER : Terrain.LAND, new HexCoordinate(a, c));
+			}
+		}
+		HexBoard b = builder.build();
+		TerrainSet land = new TerrainSet(Terrain.LAND);
+		HexCoordinate[] from = new HexCoordinate[queries], to = new HexCoordinate[queries];
+		for (int i=0; i < queries; ++i) {
+			from[i] = new HexCoordinate(r.nextInt(side), r.nextInt(side));
+			to[i] = new HexCoordinate(r.nextInt(side), r.nextInt(side));
+		}
+		Search s = new Search(land, new FIFOWorklist<>());
+		int found = 0;
+		long start = System.nanoTime();
+		for (int i=0; i < queries; ++i) {
+			if (s.find(from[i], to[i], b) != null) ++found;
+		}
+		report("search (no index)", b.size(), System.nanoTime() - start, queries);
+
+		start = System.nanoTime();
+		b.connectivity(land);
+		report("build connectivity index", b.size(), System.nanoTime() - start, 1);
+
+		int again = 0;
+		start = System.nanoTime();
+		for (int i=0; i < queries; ++i) {
+			if (s.find(from[i], to[i], b) != null) ++again;
+		}
+		report("search (with index)", b.size(), System.nanoTime() - start, queries);
+		if (found != again) System.out.println("  (searches disagree: " + found + " vs " + again + ")");
+	}
+
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i=0; i < 4; ++i) System.gc();
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	/**
+	 * Print the heap used per tile by a board built by the given code.
+	 * The board is kept reachable until it has been measured.
+	 */
+	private static void measure(String what, int n, Supplier<AbstractHexBoard> build) {
+		long before = usedHeap();
+		AbstractHexBoard b = build.get();
+		long after = usedHeap();
+		System.out.printf("%-28s n=%-9d %8.1f bytes/tile%n", what, n, (double)(after - before) / n);
+		if (b.size() != n) System.out.println("  (lost tiles: " + b.size() + ")");
+	}
+
+	/**
+	 * Estimate the heap used per tile by each kind of board, holding a million tiles.
+	 * Off-heap storage is not counted.  Run with a fixed heap, e.g. -Xms2g -Xmx2g,
+	 * for steadier numbers.
+	 */
+	private static void footprint() {
+		final int n = 1_000_000;
+		Random r = new Random(SEED);
+		List<HexTile> tiles = new ArrayList<>(n);
+		for (HexCoordinate h : coordinates(n, r)) tiles.add(new HexTile(randomTerrain(r), h));
+		measure("HexBoard", n, () -> {
+			HexBoard b = new HexBoard();
+			b.addTiles(tiles);
+			return b;
+		});
+		measure("PackedHexBoard", n, () -> fill(new PackedHexBoard(n), tiles));
+		measure("ChunkedHexBoard", n, () -> fill(new ChunkedHexBoard(), tiles));
+		measure("OffHeapHexBoard (heap only)", n, () -> fill(new OffHeapHexBoard(n), tiles));
+		AbstractHexBoard source = fill(new PackedHexBoard(n), tiles);
+		measure("FrozenHexBoard", n, () -> source.freeze());
+		measure("DenseHexBoard", n, () -> {
+			HexBoard.Builder builder = new HexBoard.Builder();
+			for (HexTile t : tiles) builder.add(t);
+			return builder.buildBest();
+		});
+	}
+
+	private static AbstractHexBoard fill(AbstractHexBoard b, List<HexTile> tiles) {
+		for (HexTile t : tiles) b.add(new HexBoard.HexPiece(t.getTerrain(), t.getLocation()));
+		return b;
+	}
+
+	/**
+	 * Time generating large boards with {@link HexBoardGenerator}, in parallel
+	 * on all available processors, and check that the same seed gives the same board.
+	 */
+	private static void generate() {
+		System.out.println("processors: " + Runtime.getRuntime().availableProcessors());
+		HexBoardGenerator g = new HexBoardGenerator(SEED).rectangle(1_000, 1_000);
+		long start = System.nanoTime();
+		HexBoard b = g.generate();
+		report("generate -> HexBoard", b.size(), System.nanoTime() - start, b.size());
+		start = System.nanoTime();
+		FrozenHexBoard f = g.generateFrozen();
+		report("generate -> Frozen", f.size(), System.nanoTime() - start, f.size());
+		if (!HexBoardPatch.diff(b, f).isEmpty()) System.out.println("  (boards from the same seed differ)");
+		Path text = null;
+		try {
+			text = Files.createTempFile("board", ".txt");
+			start = System.nanoTime();
+			g.writeTiles(text);
+			report("generate -> text file", g.size(), System.nanoTime() - start, g.size());
+		} catch (IOException e) {
+			System.out.println("generate failed: " + e);
+		} finally {
+			try {
+				if (text != null) Files.deleteIfExists(text);
+			} catch (IOException e) {
+				System.out.println("could not delete temporary file: " + e);
+			}
+		}
+		g.rectangle(4_000, 2_500);
+		start = System.nanoTime();
+		f = g.generateFrozen();
+		long nanos = System.nanoTime() - start;
+		report("generate -> Frozen", f.size(), nanos, f.size());
+		System.out.printf("  %.1f s in all; terrains: %s%n", nanos / 1e9,
+				f.stream().collect(Collectors.groupingBy(HexBoard.HexPiece::getTerrain, Collectors.counting())));
+	}
+
+	/**
+	 * Search a generated board stored as a {@link PagedHexBoard}, with memory budgets
+	 * for a few regions and for all of them, with and without prefetching,
+	 * printing the cache metrics of each run.
+	 */
+	private static void paged() {
+		final int side = 1_000, region = 128;
+		FrozenHexBoard f = new HexBoardGenerator(SEED).rectangle(side, side).generateFrozen();
+		TerrainSet ts = new TerrainSet(Terrain.LAND, Terrain.FOREST, Terrain.DESERT, Terrain.CITY, Terrain.MOUNTAIN);
+		Path dir = null;
+		try {
+			dir = Files.createTempDirectory("paged");
+			PagedHexBoard.write(f, dir, region);
+			long regionBytes = FrozenHexBoard.memoryEstimate(region * region);
+			for (int regions : new int[] { 16, 64 }) {
+				for (boolean prefetch : new boolean[] { false, true }) {
+					PagedHexBoard b = new PagedHexBoard(dir, regions * regionBytes);
+					b.setPrefetch(prefetch);
+					Random r = new Random(SEED);
+					int found = 0;
+					final int searches = 20;
+					long start = System.nanoTime();
+					for (int i=0; i < searches; ++i) {
+						int b0 = r.nextInt(side - 200), a0 = b0/2 + r.nextInt(side - 200);
+						HexCoordinate from = new HexCoordinate(a0, b0);
+						HexCoordinate to = new HexCoordinate(a0 + r.nextInt(200), b0 + r.nextInt(200));
+						if (new Search(ts, new FIFOWorklist<>()).find(from, to, b) != null) ++found;
+					}
+					report("paged search, " + regions + " regions" + (prefetch ? " +pf" : ""), b.size(), System.nanoTime() - start, searches);
+					System.out.printf("  found %d; hits=%d misses=%d evictions=%d prefetched=%d%n",
+							found, b.getHits(), b.getMisses(), b.getEvictions(), b.getPrefetched());
+				}
+			}
+		} catch (IOException e) {
+			System.out.println("paged failed: " + e);
+		} finally {
+			if (dir != null) {
+				try (Stream<Path> files = Files.list(dir)) {
+					for (Path p : files.collect(Collectors.toList())) Files.delete(p);
+					Files.delete(dir);
+				} catch (IOException e) {
+					System.out.println("could not delete temporary files: " + e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compare A* search with FIFO (breadth-first) search between random points
+	 * of a generated 1000x1000 board, in pieces expanded and time,
+	 * checking that both find paths of the same length.
+	 * Only searches that find a path are counted: otherwise both
+	 * search the whole region reachable from the start.
+	 */
+	private static void astar() {
+		final int side = 1_000, searches = 20;
+		HexBoard b = new HexBoardGenerator(SEED).rectangle(side, side).generate();
+		TerrainSet ts = new TerrainSet(Terrain.LAND, Terrain.FOREST, Terrain.DESERT, Terrain.CITY, Terrain.MOUNTAIN);
+		Search fifo = new Search(ts, new FIFOWorklist<>()), informed = Search.aStar(ts);
+		ConnectivityIndex index = b.connectivity(ts);
+		Random r = new Random(SEED);
+		long fifoNanos = 0, astarNanos = 0, fifoExpanded = 0, astarExpanded = 0;
+		int found = 0;
+		for (int picks = 0; found < searches && picks < MAX_PICKS; ++picks) {
+			int b0 = r.nextInt(side), b1 = r.nextInt(side);
+			HexCoordinate from = new HexCoordinate(b0/2 + r.nextInt(side), b0);
+			HexCoordinate to = new HexCoordinate(b1/2 + r.nextInt(side), b1);
+			if (!index.connected(from, to)) continue;
+			long start = System.nanoTime();
+			HexPath p1 = fifo.find(from, to, b);
+			fifoNanos += System.nanoTime() - start;
+			fifoExpanded += fifo.getExpanded();
+			start = System.nanoTime();
+			HexPath p2 = informed.find(from, to, b);
+			astarNanos += System.nanoTime() - start;
+			astarExpanded += informed.getExpanded();
+			if (p1 == null || p2 == null || p1.length() != p2.length()) {
+				System.out.println("  (paths differ from " + from + " to " + to + ")");
+			}
+			++found;
+		}
+		if (!enoughPairs(found, searches)) return;
+		System.out.printf("%-28s %,12d expanded %8.1f ms/search%n", "FIFO", fifoExpanded / found, fifoNanos / 1e6 / found);
+		System.out.printf("%-28s %,12d expanded %8.1f ms/search%n", "A*", astarExpanded / found, astarNanos / 1e6 / found);
+	}
+
+	/**
+	 * Report if fewer pairs of locations were found than wanted
+	 * (because too few random picks were connected).
+	 * @return whether any were found, so that averages can be printed
+	 */
+	private static boolean enoughPairs(int found, int wanted) {
+		if (found < wanted) System.out.println("  (only " + found + " connected pairs in " + MAX_PICKS + " picks)");
+		return found > 0;
+	}
+
+	/**
+	 * Run each priority worklist through the pattern of a shortest-path search:
+	 * remove the smallest key and add a few elements with slightly larger keys.
+	 * Every worklist must return the same sequence of keys.
+	 */
+	private static void worklists() {
+		final int n = 2_000_000;
+		Map<String,Supplier<Worklist<int[]>>> kinds = new LinkedHashMap<>();
+		kinds.put("binary heap", () -> new HeapWorklist<>(2, (e) -> e[0]));
+		kinds.put("4-ary heap", () -> new HeapWorklist<>(4, (e) -> e[0]));
+		kinds.put("pairing heap", () -> new PairingHeapWorklist<>((e) -> e[0]));
+		kinds.put("bucket queue", () -> new BucketWorklist<>((e) -> e[0]));
+		for (int round=0; round < 2; ++round) {
+			long expected = -1;
+			for (Map.Entry<String,Supplier<Worklist<int[]>>> e : kinds.entrySet()) {
+				Random r = new Random(SEED);
+				Worklist<int[]> w = e.getValue().get();
+				w.add(new int[] { 0 });
+				long sum = 0;
+				int added = 1;
+				long start = System.nanoTime();
+				for (int i=0; i < n && w.hasNext(); ++i) {
+					int k = w.next()[0];
+					sum += k;
+					for (int j=0; j < 2 && added < n; ++j, ++added) w.add(new int[] { k + 1 + r.nextInt(10) });
+				}
+				report(e.getKey(), n, System.nanoTime() - start, n);
+				if (expected < 0) expected = sum;
+				else if (sum != expected) System.out.println("  (keys differ: " + sum + " vs " + expected + ")");
+			}
+		}
+	}
+
+	/**
+	 * Compare cheapest-path searches (Dijkstra and A*) on a generated 1000x1000 board
+	 * where forests, deserts and mountains cost more to cross than land,
+	 * checking that they agree on the cost, and showing how much more
+	 * the paths found by FIFO (breadth-first) search cost.
+	 */
+	private static void costs() {
+		final int side = 1_000, searches = 20;
+		HexBoard b = new HexBoardGenerator(SEED).rectangle(side, side).generate();
+		TerrainCosts c = new TerrainCosts().with(Terrain.LAND, 1).with(Terrain.CITY, 1)
+				.with(Terrain.DESERT, 2).with(Terrain.FOREST, 3).with(Terrain.MOUNTAIN, 6);
+		ConnectivityIndex index = b.connectivity(c.getPassable());
+		Search dijkstra = Search.dijkstra(c), informed = Search.aStar(c), fifo = new Search(c.getPassable(), new FIFOWorklist<>());
+		Random r = new Random(SEED);
+		long dijkstraNanos = 0, astarNanos = 0, dijkstraExpanded = 0, astarExpanded = 0, cheapest = 0, breadthFirst = 0;
+		int found = 0;
+		for (int picks = 0; found < searches && picks < MAX_PICKS; ++picks) {
+			int b0 = r.nextInt(side), b1 = r.nextInt(side);
+			HexCoordinate from = new HexCoordinate(b0/2 + r.nextInt(side), b0);
+			HexCoordinate to = new HexCoordinate(b1/2 + r.nextInt(side), b1);
+			if (!index.connected(from, to)) continue;
+			long start = System.nanoTime();
+			HexPath p1 = dijkstra.find(from, to, b);
+			dijkstraNanos += System.nanoTime() - start;
+			dijkstraExpanded += dijkstra.getExpanded();
+			start = System.nanoTime();
+			HexPath p2 = informed.find(from, to, b);
+			astarNanos += System.nanoTime() - start;
+			astarExpanded += informed.getExpanded();
+			if (p1 == null || p2 == null || c.costOf(p1, b) != c.costOf(p2, b)) {
+				System.out.println("  (costs differ from " + from + " to " + to + ")");
+				continue;
+			}
+			cheapest += c.costOf(p1, b);
+			breadthFirst += c.costOf(fifo.find(from, to, b), b);
+			++found;
+		}
+		if (!enoughPairs(found, searches)) return;
+		System.out.printf("%-28s %,12d expanded %8.1f ms/search%n", "Dijkstra", dijkstraExpanded / found, dijkstraNanos / 1e6 / found);
+		System.out.printf("%-28s %,12d expanded %8.1f ms/search%n", "A* (costs)", astarExpanded / found, astarNanos / 1e6 / found);
+		System.out.printf("  average cost %.1f; FIFO paths cost %.1f%n", (double)cheapest / found, (double)breadthFirst / found);
+	}
+}
@@ -13,6 +13,8 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.JButton;
 import javax.swing.JComboBox;
@@ -32,6 +34,7 @@ public class HexBoardEditor extends JFrame {
 
 	public static void main(String[] args) {
 		final HexBoard board = new HexBoard();
+		final List<HexTile> tiles = new ArrayList<>();
 		try {
 			for (String arg : args) {
 				try (BufferedReader r = new BufferedReader(new FileReader(arg))) {
@@ -39,8 +42,7 @@ public class HexBoardEditor extends JFrame {
 					while ((input = r.readLine()) != null && !input.equalsIgnoreCase("quit")) {
 						try {
 							// TODO: use HexTiles static fromString method to get a hex tile and then add it to the board
-							HexTile tile = HexTile.fromString(input);
-							board.add(tile);	
+							tiles.add(HexTile.fromString(input));
 						} catch (FormatException e) {
 							System.out.println(e.getMessage());
 						}
@@ -51,6 +53,7 @@ public class HexBoardEditor extends JFrame {
 			JOptionPane.showMessageDialog(null, e.getLocalizedMessage(), "Errror reading HexBoard", JOptionPane.ERROR_MESSAGE);
 			System.out.println(e.getMessage());
 		}
+		board.addTiles(tiles);
 		SwingUtilities.invokeLater(new Runnable() {
 			public void run() {
 				final HexBoardEditor x = new HexBoardEditor(board);
@@ -0,0 +1,149 @@
+package edu.uwm.cs351;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import edu.uwm.cs351.HexBoard.HexPiece;
+
+/**
+ * Reading and writing hex boards in a compact binary file format,
+ * an alternative to the text format of one {@link HexTile} per line.
+ * The file (in big-endian order) consists of
+ * <ol>
+ * <li> a header of three ints: the magic number "HEXB", the format version (1),
+ *      and the number of tiles <var>n</var>;
+ * <li> <var>n</var> longs: the coordinates of the tiles, each with <var>a</var> in the high
+ *      32 bits and <var>b</var> in the low 32 bits;
+ * <li> <var>n</var> bytes: the terrain ordinals of the tiles, in the same order.
+ * </ol>
+ * Readers map the file into memory and transfer each section in bulk,
+ * with no parsing and no per-tile objects other than those of the board built.
+ */
+public class HexBoardFile {
+	private static final int MAGIC = 0x48455842; // "HEXB"
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 12;
+	private static final int MAX_TILES = Integer.MAX_VALUE / Long.BYTES; // one mapping per section
+	private static final Terrain[] TERRAINS = Terrain.values();
+
+	private HexBoardFile() {} // no instances
+
+	/**
+	 * Write the given pieces to a file in the binary format,
+	 * replacing anything already there.
+	 * @param pieces pieces to write, must not be null, nor include null
+	 * @param file file to write, must not be null
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(Iterable<? extends HexPiece> pieces, Path file) throws IOException {
+		int n = 0;
+		long[] keys = new long[1024];
+		byte[] terrains = new byte[1024];
+		for (HexPiece p : pieces) {
+			if (n == keys.length) {
+				keys = Arrays.copyOf(keys, n * 2);
+				terrains = Arrays.copyOf(terrains, n * 2);
+			}
+			HexCoordinate h = p.getLocation();
+			keys[n] = HexCoordinate.pack(h.a(), h.b());
+			terrains[n] = (byte)p.getTerrain().ordinal();
+			++n;
+		}
+		if (n > MAX_TILES) throw new IllegalArgumentException("too many tiles for one file: " + n);
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+			buf.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(n);
+			for (int i=0; i < n; ++i) {
+				if (buf.remaining() < Long.BYTES) drain(ch, buf);
+				buf.putLong(keys[i]);
+			}
+			for (int i=0; i < n; ++i) {
+				if (!buf.hasRemaining()) drain(ch, buf);
+				buf.put(terrains[i]);
+			}
+			drain(ch, buf);
+		}
+	}
+
+	private static void drain(FileChannel ch, ByteBuffer buf) throws IOException {
+		buf.flip();
+		while (buf.hasRemaining()) ch.write(buf);
+		buf.clear();
+	}
+
+	/**
+	 * The raw contents of a board file.
+	 */
+	private static class Contents {
+		final long[] keys;
+		final byte[] terrains;
+
+		Contents(long[] k, byte[] t) {
+			keys = k;
+			terrains = t;
+		}
+	}
+
+	private static Contents load(Path file) throws IOException {
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (ch.size() < HEADER_SIZE) throw new FormatException("file too short for a hex board: " + file);
+			MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC) throw new FormatException("not a hex board file: " + file);
+			int version = header.getInt();
+			if (version != FORMAT_VERSION) throw new FormatException("unsupported hex board file version " + version);
+			int n = header.getInt();
+			if (n < 0 || n > MAX_TILES) throw new FormatException("bad tile count " + n);
+			long expected = HEADER_SIZE + (long)n * (Long.BYTES + 1);
+			if (ch.size() != expected) throw new FormatException("file size is " + ch.size() + ", expected " + expected);
+			long[] keys = new long[n];
+			byte[] terrains = new byte[n];
+			ch.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long)n * Long.BYTES).asLongBuffer().get(keys);
+			ch.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + (long)n * Long.BYTES, n).get(terrains);
+			for (byte t : terrains) {
+				if (t < 0 || t >= TERRAINS.length) throw new FormatException("no terrain with ordinal " + t);
+			}
+			return new Contents(keys, terrains);
+		}
+	}
+
+	/**
+	 * Read a binary board file into a new (mutable) hex board.
+	 * If a location occurs more than once, the last tile wins.
+	 * @param file file to read, must not be null
+	 * @return new hex board, never null
+	 * @throws IOException if the file cannot be read
+	 * @throws FormatException if the file is not a valid board file
+	 */
+	public static HexBoard read(Path file) throws IOException {
+		Contents c = load(file);
+		HexBoard result = new HexBoard();
+		result.addTiles(c.keys.length, (i) -> TERRAINS[c.terrains[i]],
+				(i) -> new HexCoordinate(HexCoordinate.unpackA(c.keys[i]), HexCoordinate.unpackB(c.keys[i])));
+		return result;
+	}
+
+	/**
+	 * Read a binary board file into a read-only board.
+	 * The arrays read from the file are used as they are, so this is the
+	 * fastest way to load a board for searching.
+	 * @param file file to read, must not be null
+	 * @return frozen board with the contents of the file, never null
+	 * @throws IOException if the file cannot be read
+	 * @throws FormatException if the file is not a valid board file
+	 * (including if a location occurs more than once)
+	 */
+	public static FrozenHexBoard readFrozen(Path file) throws IOException {
+		Contents c = load(file);
+		try {
+			return new FrozenHexBoard(c.keys, c.terrains);
+		} catch (IllegalArgumentException e) {
+			throw new FormatException(e.getMessage(), e);
+		}
+	}
+}
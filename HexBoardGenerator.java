@@ -0,0 +1,274 @@
+package edu.uwm.cs351;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A deterministic generator of large, natural-looking hex boards, for benchmarks
+ * and load tests.  The terrain of each location is a pure function of the seed
+ * and the location: smooth noise fields for elevation and moisture give seas,
+ * lakes, deserts and forests in clusters; ridge lines of a further field
+ * raise mountain ranges (with inaccessible peaks); and the zero lines of another
+ * field cut winding rivers of water across the land.  A few land tiles become cities.
+ * <p>
+ * Since no tile depends on any other, the rows of a board are generated in parallel,
+ * and the same seed and shape always give the same board, whatever the number of threads.
+ * A board can be generated into a {@link HexBoard} or a {@link FrozenHexBoard},
+ * or written to a file in the text format (one {@link HexTile} per line).
+ * For the binary format, pass the frozen board to {@link HexBoardFile#write}.
+ */
+public class HexBoardGenerator {
+	private static final double DEFAULT_FEATURE_SIZE = 48.0;
+	private static final double ROW_HEIGHT = Math.sqrt(3) / 2; // distance between rows, in tile widths
+	private static final int ROWS_PER_WRITE = 256;
+
+	// thresholds on the fields (each roughly in [-1,1])
+	private static final double SEA_LEVEL = -0.12;
+	private static final double HIGHLANDS = 0.38;
+	private static final double PEAKS = 0.55;
+	private static final double RIDGE = 0.96;
+	private static final double RIDGE_PEAK = 0.992;
+	private static final double DRY = -0.18;
+	private static final double WET = 0.12;
+	private static final int CITIES_PER_THOUSAND = 3;
+
+	private final long seed;
+	private int rows, width, radius = -1; // radius >= 0 for a hexagon, otherwise a rectangle
+	private double featureSize = DEFAULT_FEATURE_SIZE;
+
+	/**
+	 * Create a generator for the given seed, initially for a 100x100 rectangle.
+	 * @param seed seed for all the random choices
+	 */
+	public HexBoardGenerator(long seed) {
+		this.seed = seed;
+		rectangle(100, 100);
+	}
+
+	/**
+	 * Generate boards in the shape of a rectangle (as drawn) with the
+	 * given number of tiles across and down, with its top left tile at the origin.
+	 * @param width number of tiles in each row, must be positive
+	 * @param height number of rows, must be positive
+	 * @return this generator
+	 */
+	public HexBoardGenerator rectangle(int width, int height) {
+		if (width <= 0 || height <= 0) throw new IllegalArgumentException("dimensions must be positive: " + width + "x" + height);
+		if ((long)width * height > Integer.MAX_VALUE) throw new IllegalArgumentException("too many tiles: " + width + "x" + height);
+		this.width = width;
+		this.rows = height;
+		radius = -1;
+		return this;
+	}
+
+	/**
+	 * Generate boards in the shape of a hexagon: all locations within
+	 * the given distance of the origin.
+	 * @param radius largest distance from the origin, must not be negative
+	 * @return this generator
+	 */
+	public HexBoardGenerator hexagon(int radius) {
+		if (radius < 0) throw new IllegalArgumentException("radius cannot be negative: " + radius);
+		if (3L * radius * (radius + 1) + 1 > Integer.MAX_VALUE) throw new IllegalArgumentException("too many tiles for radius " + radius);
+		this.radius = radius;
+		rows = 2 * radius + 1;
+		return this;
+	}
+
+	/**
+	 * Set the typical size (in tiles) of the features of the landscape:
+	 * larger values give larger seas and wider mountain ranges.
+	 * @param tiles typical feature size, must be at least 1
+	 * @return this generator
+	 */
+	public HexBoardGenerator featureSize(double tiles) {
+		if (!(tiles >= 1)) throw new IllegalArgumentException("feature size must be at least 1: " + tiles);
+		featureSize = tiles;
+		return this;
+	}
+
+	/**
+	 * Return the number of tiles of the boards generated.
+	 * @return number of tiles
+	 */
+	public int size() {
+		if (radius < 0) return rows * width;
+		return 3 * radius * (radius + 1) + 1;
+	}
+
+	/// The shape, row by row
+
+	private int rowB(int r) {
+		return radius < 0 ? r : r - radius;
+	}
+
+	private int rowStartA(int r) {
+		int b = rowB(r);
+		return radius < 0 ? b/2 : Math.max(-radius, b - radius);
+	}
+
+	private int rowLength(int r) {
+		return radius < 0 ? width : 2 * radius + 1 - Math.abs(rowB(r));
+	}
+
+	/** Return the number of tiles in all rows before each row (and the total at the end). */
+	private int[] rowOffsets() {
+		int[] result = new int[rows + 1];
+		for (int r=0; r < rows; ++r) result[r+1] = result[r] + rowLength(r);
+		return result;
+	}
+
+	/// The landscape
+
+	/**
+	 * Return a hash of a lattice point of a field, as a number in [-1,1).
+	 */
+	private static double lattice(long field, int x, int y) {
+		return HexCoordinate.mix(field + HexCoordinate.pack(x, y) * 0x9E3779B97F4A7C15L) / (double)(1L << 31);
+	}
+
+	/**
+	 * Return smooth value noise in [-1,1] for a field at a point,
+	 * interpolating between hashes of the surrounding lattice points.
+	 */
+	private static double noise(long field, double x, double y) {
+		double fx = Math.floor(x), fy = Math.floor(y);
+		int ix = (int)fx, iy = (int)fy;
+		double u = fade(x - fx), v = fade(y - fy);
+		double top = lerp(u, lattice(field, ix, iy), lattice(field, ix+1, iy));
+		double bottom = lerp(u, lattice(field, ix, iy+1), lattice(field, ix+1, iy+1));
+		return lerp(v, top, bottom);
+	}
+
+	private static double fade(double t) {
+		return t * t * (3 - 2 * t);
+	}
+
+	private static double lerp(double t, double a, double b) {
+		return a + t * (b - a);
+	}
+
+	/**
+	 * Return the sum of several octaves of noise (each at twice the frequency
+	 * and half the amplitude of the last), scaled back to [-1,1].
+	 */
+	private static double fractal(long field, double x, double y, int octaves) {
+		double sum = 0, amplitude = 1, total = 0;
+		for (int i=0; i < octaves; ++i) {
+			sum += amplitude * noise(field + i, x, y);
+			total += amplitude;
+			amplitude /= 2;
+			x *= 2;
+			y *= 2;
+		}
+		return sum / total;
+	}
+
+	private long field(int i) {
+		return (seed + i) * 0xC2B2AE3D27D4EB4FL;
+	}
+
+	/**
+	 * Return the terrain that this generator gives to a location.
+	 * @param h location, must not be null
+	 * @return terrain at that location, never null
+	 */
+	public Terrain terrainAt(HexCoordinate h) {
+		return terrainAt(h.a(), h.b());
+	}
+
+	private Terrain terrainAt(int a, int b) {
+		double x = (a - b / 2.0) / featureSize, y = b * ROW_HEIGHT / featureSize;
+		double elevation = fractal(field(0), x, y, 5);
+		if (elevation < SEA_LEVEL) return Terrain.WATER;
+		if (elevation > PEAKS) return Terrain.INACCESSIBLE;
+		double ridge = 1 - Math.abs(fractal(field(1), x / 2, y / 2, 3));
+		if (ridge > RIDGE_PEAK && elevation > HIGHLANDS / 2) return Terrain.INACCESSIBLE;
+		if (ridge > RIDGE || elevation > HIGHLANDS) return Terrain.MOUNTAIN;
+		double river = Math.abs(fractal(field(2), x / 3, y / 3, 2));
+		if (river < 0.12 / featureSize) return Terrain.WATER;
+		double moisture = fractal(field(3), x, y, 3);
+		if (moisture < DRY) return Terrain.DESERT;
+		if (moisture > WET) return Terrain.FOREST;
+		if (Math.floorMod(HexCoordinate.mix(field(4) ^ HexCoordinate.pack(a, b)), 1000) < CITIES_PER_THOUSAND) return Terrain.CITY;
+		return Terrain.LAND;
+	}
+
+	/// Output
+
+	/**
+	 * Generate the board into a frozen board, in parallel.
+	 * @return new frozen board, never null
+	 */
+	public FrozenHexBoard generateFrozen() {
+		int[] offsets = rowOffsets();
+		long[] keys = new long[offsets[rows]];
+		byte[] terrains = new byte[offsets[rows]];
+		IntStream.range(0, rows).parallel().forEach((r) -> {
+			int b = rowB(r), a0 = rowStartA(r), i = offsets[r];
+			for (int a = a0; a < a0 + rowLength(r); ++a, ++i) {
+				keys[i] = HexCoordinate.pack(a, b);
+				terrains[i] = (byte)terrainAt(a, b).ordinal();
+			}
+		});
+		return new FrozenHexBoard(keys, terrains);
+	}
+
+	/**
+	 * Generate the tiles of the board, in parallel, in row order.
+	 * @return list of the tiles, never null
+	 */
+	public List<HexTile> generateTiles() {
+		int[] offsets = rowOffsets();
+		HexTile[] tiles = new HexTile[offsets[rows]];
+		IntStream.range(0, rows).parallel().forEach((r) -> {
+			int b = rowB(r), a0 = rowStartA(r), i = offsets[r];
+			for (int a = a0; a < a0 + rowLength(r); ++a, ++i) {
+				tiles[i] = new HexTile(terrainAt(a, b), new HexCoordinate(a, b));
+			}
+		});
+		return Arrays.asList(tiles);
+	}
+
+	/**
+	 * Generate the board into a new hex board.
+	 * The tiles are generated in parallel and then added all at once.
+	 * @return new hex board, never null
+	 */
+	public HexBoard generate() {
+		HexBoard result = new HexBoard();
+		result.addTiles(generateTiles());
+		return result;
+	}
+
+	/**
+	 * Write the board to a file in the text format, one tile per line
+	 * in row order, replacing anything already there.
+	 * Each batch of rows is formatted in parallel and then written.
+	 * @param file file to write, must not be null
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeTiles(Path file) throws IOException {
+		try (BufferedWriter w = Files.newBufferedWriter(file)) {
+			for (int start=0; start < rows; start += ROWS_PER_WRITE) {
+				String[] text = IntStream.range(start, Math.min(rows, start + ROWS_PER_WRITE)).parallel()
+						.mapToObj(this::rowText).toArray(String[]::new);
+				for (String s : text) w.write(s);
+			}
+		}
+	}
+
+	private String rowText(int r) {
+		StringBuilder sb = new StringBuilder();
+		int b = rowB(r), a0 = rowStartA(r);
+		for (int a = a0; a < a0 + rowLength(r); ++a) {
+			sb.append(new HexTile(terrainAt(a, b), new HexCoordinate(a, b))).append(System.lineSeparator());
+		}
+		return sb.toString();
+	}
+}
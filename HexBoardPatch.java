@@ -0,0 +1,133 @@
+package edu.uwm.cs351;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.uwm.cs351.HexBoard.HexPiece;
+
+/**
+ * The difference between two states of a hex board: the tiles added,
+ * the tiles whose terrain changed (with their new terrain), and the locations removed.
+ * Each location occurs at most once in a patch.
+ * A patch is immutable; it can be applied to a board with {@link HexBoard#apply(HexBoardPatch)}.
+ */
+public class HexBoardPatch {
+	private final List<HexTile> added;
+	private final List<HexTile> changed;
+	private final List<HexCoordinate> removed;
+
+	private HexBoardPatch(List<HexTile> added, List<HexTile> changed, List<HexCoordinate> removed) {
+		this.added = Collections.unmodifiableList(added);
+		this.changed = Collections.unmodifiableList(changed);
+		this.removed = Collections.unmodifiableList(removed);
+	}
+
+	/**
+	 * Compute the patch that turns one board into another, in time linear
+	 * in the sizes of the boards.
+	 * @param from original board, must not be null
+	 * @param to board to reach, must not be null
+	 * @return patch from the first board to the second, never null
+	 */
+	public static HexBoardPatch diff(AbstractHexBoard from, AbstractHexBoard to) {
+		List<HexTile> added = new ArrayList<>(), changed = new ArrayList<>();
+		List<HexCoordinate> removed = new ArrayList<>();
+		for (HexPiece p : from) {
+			HexPiece q = to.get(p.getLocation());
+			if (q == null) removed.add(p.getLocation());
+			else if (q.getTerrain() != p.getTerrain()) changed.add(q.asTile());
+		}
+		for (HexPiece q : to) {
+			if (from.get(q.getLocation()) == null) added.add(q.asTile());
+		}
+		return new HexBoardPatch(added, changed, removed);
+	}
+
+	/**
+	 * The net effect of a sequence of changes at one location.
+	 */
+	private static class Net {
+		final Terrain before; // null if there was no piece before the first change
+		Terrain after; // null if there is no piece after the last change
+
+		Net(Terrain before) {
+			this.before = before;
+		}
+	}
+
+	/**
+	 * Compute the patch with the net effect of a sequence of changes
+	 * (as logged by a board), in time linear in their number.
+	 * @param changes consecutive changes to a board, oldest first, must not be null
+	 * @return patch with the same effect, never null
+	 */
+	static HexBoardPatch fromChanges(List<HexBoard.Change> changes) {
+		Map<HexCoordinate,Net> nets = new LinkedHashMap<>();
+		for (HexBoard.Change c : changes) {
+			Net n = nets.get(c.getLocation());
+			if (n == null) {
+				n = new Net(c.getOldTerrain());
+				nets.put(c.getLocation(), n);
+			}
+			n.after = c.getNewTerrain();
+		}
+		List<HexTile> added = new ArrayList<>(), changed = new ArrayList<>();
+		List<HexCoordinate> removed = new ArrayList<>();
+		for (Map.Entry<HexCoordinate,Net> e : nets.entrySet()) {
+			Net n = e.getValue();
+			if (n.before == n.after) continue;
+			if (n.before == null) added.add(new HexTile(n.after, e.getKey()));
+			else if (n.after == null) removed.add(e.getKey());
+			else changed.add(new HexTile(n.after, e.getKey()));
+		}
+		return new HexBoardPatch(added, changed, removed);
+	}
+
+	/**
+	 * Return the tiles at locations that had no piece before.
+	 * @return unmodifiable list of added tiles, never null
+	 */
+	public List<HexTile> getAdded() {
+		return added;
+	}
+
+	/**
+	 * Return the tiles at locations whose terrain changed, with their new terrain.
+	 * @return unmodifiable list of changed tiles, never null
+	 */
+	public List<HexTile> getChanged() {
+		return changed;
+	}
+
+	/**
+	 * Return the locations whose pieces were removed.
+	 * @return unmodifiable list of removed locations, never null
+	 */
+	public List<HexCoordinate> getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * Return the number of locations affected by this patch.
+	 * @return number of locations affected
+	 */
+	public int size() {
+		return added.size() + changed.size() + removed.size();
+	}
+
+	/**
+	 * Return whether this patch changes nothing.
+	 * @return whether the patch is empty
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override // implementation
+	public String toString() {
+		return "+" + added.size() + " ~" + changed.size() + " -" + removed.size();
+	}
+}
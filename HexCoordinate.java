@@ -87,8 +87,46 @@ public class HexCoordinate {
 	
 	@Override
 	public int hashCode() {
-		return a ^ (b << 8);
-		//return some combination of a, b and c that distinguishes similar coordinates
+		// Mix all the bits of both coordinates,
+		// so that wide boards and negative coordinates do not collide systematically.
+		return mix(pack(a, b));
+	}
+
+	/// Packed form, used by the boards that keep coordinates in primitive arrays
+
+	/**
+	 * Pack a coordinate into a single long.
+	 * @param a first coordinate
+	 * @param b second coordinate
+	 * @return packed form
+	 */
+	static long pack(int a, int b) {
+		return ((long)a << 32) | (b & 0xFFFFFFFFL);
+	}
+
+	static int unpackA(long k) {
+		return (int)(k >> 32);
+	}
+
+	static int unpackB(long k) {
+		return (int)k;
+	}
+
+	/**
+	 * Scramble the bits of a packed coordinate so that
+	 * nearby coordinates land in distant slots
+	 * (the MurmurHash3 64-bit finalizer).
+	 * This is also {@link #hashCode()}, so every table agrees.
+	 * @param k packed coordinate
+	 * @return well-mixed hash
+	 */
+	static int mix(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return (int)k;
 	}
 	
 	
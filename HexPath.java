@@ -6,6 +6,8 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.function.Consumer;
 
+import edu.uwm.cs351.util.InvariantLevel;
+
 /**
  * A class representing a path through hex space.
  * It started with a hex coordinate and then moves from one hexagon to an adjacent hexagon, 
@@ -20,6 +22,12 @@ public class HexPath implements Iterable<HexCoordinate>, Cloneable {
 	private List<HexDirection> directions;
 	private HexCoordinate start;
 	private HexCoordinate end;
+	// what incremental invariant checks have already seen (not part of the data structure)
+	private int checkedLength = -1; // number of directions checked, or -1 if none yet
+	private HexCoordinate checkedEnd; // where those directions lead
+	private HexDirection checkedLast; // the last of them, or null if none
+	private int opsSinceCheck; // operations since the last sampled check
+	private static InvariantLevel invariantLevel = InvariantLevel.configured(HexPath.class);
 	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: "+ s);
 
 	private boolean report(String error) {
@@ -53,6 +61,72 @@ public class HexPath implements Iterable<HexCoordinate>, Cloneable {
 		return true;
 	}
 
+	/**
+	 * Return how thoroughly paths check their invariant when assertions are enabled.
+	 * @return current level, never null
+	 */
+	public static InvariantLevel getInvariantLevel() {
+		return invariantLevel;
+	}
+
+	/**
+	 * Set how thoroughly paths check their invariant when assertions are enabled.
+	 * At the incremental level, only the directions added or removed since the
+	 * last check are replayed.
+	 * @param l level to use, must not be null
+	 */
+	public static void setInvariantLevel(InvariantLevel l) {
+		if (l == null) throw new NullPointerException("invariant level cannot be null");
+		invariantLevel = l;
+	}
+
+	private boolean checkInvariant() {
+		switch (invariantLevel) {
+		case OFF:
+			return true;
+		case SAMPLED:
+			if (directions != null && !InvariantLevel.sampleDue(++opsSinceCheck, directions.size())) return true;
+			opsSinceCheck = 0;
+			return wellFormed();
+		case INCREMENTAL:
+			return wellFormedIncremental();
+		default:
+			return wellFormed();
+		}
+	}
+
+	/**
+	 * Check the invariant by replaying only the directions added since the last check,
+	 * or undoing the one removed since then, from the end reached at that check.
+	 * If the path changed in any other way, all the directions are replayed.
+	 */
+	private boolean wellFormedIncremental() {
+		if (directions == null || start == null || end == null) {
+			return report("all fields are non-null ");
+		}
+		int n = directions.size();
+		if (checkedLength > 0 && n == checkedLength - 1) {
+			checkedEnd = checkedLast.reverse().move(checkedEnd);
+			checkedLength = n;
+			checkedLast = n == 0 ? null : directions.get(n-1);
+		} else if (checkedLength < 0 || n < checkedLength || checkedLength > 0 && directions.get(checkedLength-1) != checkedLast) {
+			checkedLength = 0;
+			checkedEnd = start;
+			checkedLast = null;
+		}
+		for (; checkedLength < n; ++checkedLength) {
+			HexDirection d = directions.get(checkedLength);
+			if (d == null) {
+				checkedLength = -1;
+				return report("Null direction detected");
+			}
+			checkedEnd = d.move(checkedEnd);
+			checkedLast = d;
+		}
+		if (!checkedEnd.equals(end)) return report("End coordinate inconsistent");
+		return true;
+	}
+
 	// TODO:
 	// First stub everything needed to fix compiler errors
 	// Then follow instructions from the homework description
@@ -93,15 +167,15 @@ public class HexPath implements Iterable<HexCoordinate>, Cloneable {
 	}
 
 	public void add(HexDirection hexDirection) {
-		assert wellFormed() : "invariant failed at start of add";
+		assert checkInvariant() : "invariant failed at start of add";
 		end = hexDirection.move(end);
 		directions.add(hexDirection);
-		assert wellFormed() : "invariant failed at end of add";
+		assert checkInvariant() : "invariant failed at end of add";
 
 	}
 
 	public boolean isEmpty() {
-		assert wellFormed() : "invariant failed at start of isEmpty";
+		assert checkInvariant() : "invariant failed at start of isEmpty";
 		return directions.size()==0;
 	}
 
@@ -111,36 +185,36 @@ public class HexPath implements Iterable<HexCoordinate>, Cloneable {
 	}
 
 	public int length() {
-		assert wellFormed() : "invariant failed at start of length";
+		assert checkInvariant() : "invariant failed at start of length";
 		return directions.size();
 	}
 
 	public HexCoordinate getStart() {
-		assert wellFormed() : "invariant failed at start of start";
+		assert checkInvariant() : "invariant failed at start of start";
 		// TODO Auto-generated method stub
 		return start;
 		//		directions[]=start;
 	}
 
 	public HexDirection removeLast() {
-		assert wellFormed() : "invariant failed at start of removeLast";
+		assert checkInvariant() : "invariant failed at start of removeLast";
 		if (directions.isEmpty()) throw new IllegalStateException("No directions to remove");
 		HexDirection last = directions.remove(directions.size() - 1);
 			end = last.reverse().move(end);
-		assert wellFormed() : "invariant failed at end of removeLast";
+		assert checkInvariant() : "invariant failed at end of removeLast";
 		return last;
 
 
 	}
 
 	public HexCoordinate getEnd() {
-		assert wellFormed() : "invariant failed at start of getEnd";
+		assert checkInvariant() : "invariant failed at start of getEnd";
 		// TODO Auto-generated method stub
 		return end;
 	}
 
 	public void add(String string) {
-		assert wellFormed() : "invariant failed at start of add";
+		assert checkInvariant() : "invariant failed at start of add";
 		if(string==null) throw new NullPointerException("string is null");
 		for(int i=0;i<string.length();i++) {
 			char character =string.charAt(i);
@@ -148,12 +222,12 @@ public class HexPath implements Iterable<HexCoordinate>, Cloneable {
 			add(addCharacter);
 
 		}
-		assert wellFormed() : "invariant failed at end of add";
+		assert checkInvariant() : "invariant failed at end of add";
 
 	}
 
 	public HexDirection last() {
-		assert wellFormed() : "invariant failed at start of last";
+		assert checkInvariant() : "invariant failed at start of last";
 		if(isEmpty()) throw new IllegalStateException("the arrayList is empty");
 		HexDirection last = directions.get(directions.size()-1);
 		return last;
@@ -171,7 +245,7 @@ public class HexPath implements Iterable<HexCoordinate>, Cloneable {
 	@Override
 	public HexPath clone()
 	{  // Clone a HexTileSeq object.
-		assert wellFormed() : "invariant failed at start of clone";
+		assert checkInvariant() : "invariant failed at start of clone";
 		HexPath result;
 
 		try
@@ -190,8 +264,8 @@ public class HexPath implements Iterable<HexCoordinate>, Cloneable {
 		result.directions = new ArrayList<>(this.directions);
 		//		result.end=end;
 
-		assert wellFormed() : "invariant failed at end of clone";
-		assert result.wellFormed() : "invariant failed for clone";
+		assert checkInvariant() : "invariant failed at end of clone";
+		assert result.checkInvariant() : "invariant failed for clone";
 
 		return result;
 	}
@@ -19,7 +19,7 @@ import edu.uwm.cs351.util.Worklist;
 /**
  * Render a file of hex tiles on the screen, and then
  * perform a search on it. <br/>
- * Usage: &lt;filename&gt; [<code>FIFO</code>|<code>LIFO</code>] &lt;start&gt; &lt;end&gt; &lt;terrain&gt; ...<br/>
+ * Usage: &lt;filename&gt; [<code>FIFO</code>|<code>LIFO</code>|<code>ASTAR</code>] &lt;start&gt; &lt;end&gt; &lt;terrain&gt; ...<br/>
  * The "start" and "end" are three element hex coordinates, e.g., <code>&lt2,1,1&gt;</code>.
  * The terrains listed at the end are the ones that the path may traverse, e.g., <code>LAND DESERT</code>.
  */
@@ -35,18 +35,20 @@ public class HexPathFinder extends JFrame {
 		if (args.length < 4) {
 			System.out.println("Set Run>Run Configurations>Arguments>Program Arguments to have at least four arguments:");
 			System.out.println("\ta filename (file of hextiles)");
-			System.out.println("\tone of FIFO or LIFO");
+			System.out.println("\tone of FIFO, LIFO or ASTAR");
 			System.out.println("\ta starting hex coordinate");
 			System.out.println("\tan ending hex coordinate");
 			System.out.println("\tany terrain that is passable");
 			System.exit(1);
 		}
-		Worklist<HexBoard.HexPiece> worklist;
+		Worklist<HexBoard.HexPiece> worklist = null; // not used by A*, which orders its own frontier
+		boolean astar = false;
 		HexCoordinate start, end;
 		try {
 			readSeq(board, new BufferedReader(new FileReader(args[0])));
 			if (args[1].equals("FIFO")) worklist = new FIFOWorklist<>();
 			else if (args[1].equals("LIFO")) worklist = new LIFOWorklist<>();
+			else if (args[1].equals("ASTAR")) astar = true;
 			else {
 				System.out.println("Unknown worklist type: " + args[1]);
 				System.exit(1);
@@ -62,7 +64,8 @@ public class HexPathFinder extends JFrame {
 			System.exit(1);
 			return;
 		}
-		final Search search = new Search(new TerrainSet(passable.toArray(new Terrain[0])), worklist);
+		TerrainSet ts = new TerrainSet(passable.toArray(new Terrain[0]));
+		final Search search = astar ? Search.aStar(ts) : new Search(ts, worklist);
 		final HexPath path = search.find(start, end, board);
 		if (path == null) {
 			System.out.println("No path found.");
@@ -79,15 +82,16 @@ public class HexPathFinder extends JFrame {
 	}
 	
 	private static void readSeq(HexBoard b, BufferedReader r) throws IOException {
+		List<HexTile> tiles = new ArrayList<>();
 		String input;
 		while ((input = r.readLine()) != null) {
 			try {
-				HexTile tile = HexTile.fromString(input);
-				b.add(new HexBoard.HexPiece(tile.getTerrain(), tile.getLocation()));
+				tiles.add(HexTile.fromString(input));
 			} catch (FormatException e) {
 				System.out.println(e.getMessage());
 			}
 		}
+		b.addTiles(tiles);
 	}
 	
 	@SuppressWarnings("serial")
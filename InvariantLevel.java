@@ -0,0 +1,53 @@
+package edu.uwm.cs351.util;
+
+/**
+ * How thoroughly a data structure checks its invariant in assertions
+ * (which only run when assertions are enabled, e.g. with <code>-ea</code>).
+ * Each class that supports levels has its own setting, whose default
+ * may be given with the system property <code><var>class-name</var>.invariants</code>,
+ * for example <code>-Dedu.uwm.cs351.HexBoard.invariants=INCREMENTAL</code>.
+ */
+public enum InvariantLevel {
+	/** No checking at all. */
+	OFF,
+	/**
+	 * A full check only now and then: about once for every <var>n</var> operations
+	 * on a structure of size <var>n</var>, so the cost per operation is constant on average.
+	 */
+	SAMPLED,
+	/**
+	 * Check only the parts of the structure that an operation touched
+	 * (for example, one chain of a hash table or one path of a tree),
+	 * along with facts that can be checked in constant time.
+	 */
+	INCREMENTAL,
+	/** Check the whole invariant at every opportunity (the default). */
+	FULL;
+
+	/**
+	 * Return the level configured for a class by system property,
+	 * or {@link #FULL} if none (or an unknown level) is given.
+	 * @param c class whose level is wanted, must not be null
+	 * @return configured level, never null
+	 */
+	public static InvariantLevel configured(Class<?> c) {
+		String s = System.getProperty(c.getName() + ".invariants");
+		if (s == null) return FULL;
+		try {
+			return valueOf(s.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			return FULL;
+		}
+	}
+
+	/**
+	 * Return whether a sampled check is due, given how many operations
+	 * have been done since the last full check.
+	 * @param sinceLast operations since the last full check (including this one)
+	 * @param size current size of the structure
+	 * @return whether a full check should be done now
+	 */
+	public static boolean sampleDue(int sinceLast, int size) {
+		return sinceLast > size;
+	}
+}
@@ -0,0 +1,108 @@
+package edu.uwm.cs351;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A hex board whose tiles are kept outside the Java heap, in direct byte buffers,
+ * so that boards with hundreds of millions of tiles neither need a huge heap
+ * nor cause long collector pauses.
+ * This is a {@link PackedHexBoard} (an open-addressing table of packed
+ * coordinates, with parallel terrain ordinals) whose slots are kept
+ * in pages of direct memory, since a single buffer cannot exceed 2GB.
+ * <p>
+ * As with the other flat boards, the pieces handed out are transient flyweights.
+ * When the table grows, the old and new tables briefly coexist, so boards of known
+ * size should be created with {@link #OffHeapHexBoard(int)}.
+ * <p>
+ * Direct memory is limited by the JVM option <code>-XX:MaxDirectMemorySize</code>,
+ * which by default is the maximum heap size.  Each slot takes nine bytes
+ * (and the table is kept at most three quarters full), so a board of a
+ * hundred million tiles needs about 2.4GB of direct memory (half as much again
+ * while the table grows to that size); a board that does not fit
+ * throws an {@link OutOfMemoryError} saying so.
+ */
+public class OffHeapHexBoard extends PackedHexBoard {
+
+	private static final int PAGE_BITS = 20; // slots per page
+
+	/**
+	 * Slots kept off-heap: the keys and terrain bytes in separate paged buffers.
+	 */
+	private static class DirectSlots extends Slots {
+		private final ByteBuffer[] keys, terrains;
+
+		DirectSlots(int capacity) {
+			super(capacity);
+			int perPage = Math.min(capacity, 1 << PAGE_BITS);
+			int pages = capacity / perPage;
+			keys = new ByteBuffer[pages];
+			terrains = new ByteBuffer[pages];
+			for (int i=0; i < pages; ++i) {
+				keys[i] = allocate(perPage * Long.BYTES);
+				terrains[i] = fillOnes(allocate(perPage)); // EMPTY
+			}
+		}
+
+		private static ByteBuffer allocate(int bytes) {
+			try {
+				return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+			} catch (OutOfMemoryError e) {
+				OutOfMemoryError clearer = new OutOfMemoryError("off-heap board needs more direct memory than allowed;"
+						+ " raise -XX:MaxDirectMemorySize (by default the maximum heap size)");
+				clearer.initCause(e);
+				throw clearer;
+			}
+		}
+
+		/** Set every bit of a buffer whose capacity is a multiple of eight. */
+		private static ByteBuffer fillOnes(ByteBuffer buf) {
+			for (int i=0; i < buf.capacity(); i += Long.BYTES) buf.putLong(i, -1L);
+			return buf;
+		}
+
+		private static int page(int slot) { return slot >>> PAGE_BITS; }
+		private static int offset(int slot) { return slot & ((1 << PAGE_BITS) - 1); }
+
+		@Override // required
+		long key(int slot) {
+			return keys[page(slot)].getLong(offset(slot) * Long.BYTES);
+		}
+
+		@Override // required
+		void setKey(int slot, long k) {
+			keys[page(slot)].putLong(offset(slot) * Long.BYTES, k);
+		}
+
+		@Override // required
+		byte terrain(int slot) {
+			return terrains[page(slot)].get(offset(slot));
+		}
+
+		@Override // required
+		void setTerrain(int slot, byte t) {
+			terrains[page(slot)].put(offset(slot), t);
+		}
+
+		@Override // required
+		Slots create(int capacity) {
+			return new DirectSlots(capacity);
+		}
+	}
+
+	/**
+	 * Create an empty off-heap board.
+	 */
+	public OffHeapHexBoard() {
+		this(0);
+	}
+
+	/**
+	 * Create an empty off-heap board with room for the given number of
+	 * tiles without growing.
+	 * @param expected expected number of tiles, must not be negative
+	 */
+	public OffHeapHexBoard(int expected) {
+		super(new DirectSlots(capacityFor(expected)));
+	}
+}
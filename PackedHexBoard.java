@@ -0,0 +1,403 @@
+package edu.uwm.cs351;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import edu.uwm.cs351.HexBoard.HexPiece;
+
+/**
+ * A hex board that stores its tiles in flat primitive arrays
+ * rather than as linked objects.
+ * Coordinates are packed into a <code>long</code> and kept in an
+ * open-addressing (linear probing) table; the terrain of each slot
+ * is kept (as an ordinal) in a parallel byte array.  There are no neighbor
+ * links: moving to a neighbor probes the table for its (packed) coordinate,
+ * which is cheap, and leaves nine bytes per slot.  (Six int links per slot
+ * would nearly quadruple the memory, while searching only a little faster.)
+ * <p>
+ * The pieces handed out by this board are lightweight "flyweights" that
+ * read through to the arrays.  A flyweight stays valid as long as its tile
+ * remains on the board, but two calls to {@link #get(HexCoordinate)} for the same
+ * coordinate need not return the same object.
+ * Adding a piece copies its terrain and location; the piece itself is not kept.
+ * <p>
+ * The table is kept in {@link Slots}, so that a subclass
+ * (see {@link OffHeapHexBoard}) can keep the same table somewhere other than in arrays.
+ */
+public class PackedHexBoard extends AbstractHexBoard {
+
+	private static final int INITIAL_CAPACITY = 16; // must be a power of two
+	private static final int MAX_CAPACITY = 1 << 30;
+	private static final byte EMPTY = -1;
+	private static final byte DELETED = -2;
+	private static final Terrain[] TERRAINS = Terrain.values();
+
+	/**
+	 * Storage for the slots of the table: a packed coordinate and
+	 * a terrain byte (a terrain ordinal, or EMPTY or DELETED) for each slot.
+	 * New storage has every terrain EMPTY.
+	 */
+	static abstract class Slots {
+		final int capacity;
+
+		Slots(int capacity) {
+			this.capacity = capacity;
+		}
+
+		abstract long key(int slot);
+		abstract void setKey(int slot, long k);
+		abstract byte terrain(int slot);
+		abstract void setTerrain(int slot, byte t);
+
+		/**
+		 * Return new (empty) storage of the same kind.
+		 * @param capacity number of slots, a power of two
+		 * @return new storage, never null
+		 */
+		abstract Slots create(int capacity);
+	}
+
+	/**
+	 * Slots kept in a long array and a byte array on the heap.
+	 */
+	private static class ArraySlots extends Slots {
+		private final long[] keys;
+		private final byte[] terrains;
+
+		ArraySlots(int capacity) {
+			super(capacity);
+			keys = new long[capacity];
+			terrains = new byte[capacity];
+			Arrays.fill(terrains, EMPTY);
+		}
+
+		@Override // required
+		long key(int slot) { return keys[slot]; }
+
+		@Override // required
+		void setKey(int slot, long k) { keys[slot] = k; }
+
+		@Override // required
+		byte terrain(int slot) { return terrains[slot]; }
+
+		@Override // required
+		void setTerrain(int slot, byte t) { terrains[slot] = t; }
+
+		@Override // required
+		Slots create(int capacity) { return new ArraySlots(capacity); }
+	}
+
+	/// The data structure
+	private Slots slots;
+	private int size;
+	private int used; // slots that are not EMPTY (live or DELETED)
+	private int version;
+
+	private static Consumer<String> reporter = (s) -> System.out.println("Invariant error: "+ s);
+
+	private boolean report(String error) {
+		reporter.accept(error);
+		return false;
+	}
+
+	private boolean wellFormed() {
+		/* Invariant:
+		 * <li>The slots are not null and their capacity is a power of two</li>
+		 * <li>At least one slot is always EMPTY (so that probing terminates)</li>
+		 * <li>Every live key is found by probing from its home slot</li>
+		 * <li>size counts the live slots, used the non-EMPTY slots</li>
+		 */
+		if (slots == null) return report("null slots");
+		int cap = slots.capacity;
+		if (cap < INITIAL_CAPACITY || cap > MAX_CAPACITY || Integer.bitCount(cap) != 1) return report("capacity not a power of two: " + cap);
+		int live = 0, nonEmpty = 0;
+		for (int i=0; i < cap; ++i) {
+			byte t = slots.terrain(i);
+			if (t == EMPTY) continue;
+			++nonEmpty;
+			if (t == DELETED) continue;
+			if (t < 0 || t >= TERRAINS.length) return report("bad terrain at slot " + i);
+			++live;
+			if (find(slots.key(i)) != i) return report("key at slot " + i + " not found by probing");
+		}
+		if (live != size) return report("size is " + size + " but found " + live);
+		if (nonEmpty != used) return report("used is " + used + " but found " + nonEmpty);
+		if (used >= cap) return report("no empty slots");
+		return true;
+	}
+
+	/**
+	 * Create an empty board.
+	 */
+	public PackedHexBoard() {
+		this(0);
+	}
+
+	/**
+	 * Create an empty board with room for the given number of tiles
+	 * without resizing.
+	 * @param expected expected number of tiles, must not be negative
+	 */
+	public PackedHexBoard(int expected) {
+		this(new ArraySlots(capacityFor(expected)));
+	}
+
+	/**
+	 * Create an empty board over the given (empty) storage.
+	 * @param empty storage, must not be null
+	 */
+	PackedHexBoard(Slots empty) {
+		slots = empty;
+		assert wellFormed() : "invariant not established in constructor";
+	}
+
+	/**
+	 * Return the capacity needed for the given number of tiles.
+	 * @param n number of tiles
+	 * @return capacity, a power of two
+	 * @throws IllegalArgumentException if n is negative
+	 * @throws IllegalStateException if the table cannot be so large
+	 */
+	static int capacityFor(int n) {
+		if (n < 0) throw new IllegalArgumentException("expected size cannot be negative: " + n);
+		long cap = INITIAL_CAPACITY;
+		while (cap * 3 <= (long)n * 4) cap <<= 1; // keep load below three quarters
+		if (cap > MAX_CAPACITY) throw new IllegalStateException("too many tiles for a packed board: " + n);
+		return (int)cap;
+	}
+
+	/**
+	 * Return the slot holding the given key, or -1 if none.
+	 * @param k packed coordinate
+	 * @return slot index or -1
+	 */
+	private int find(long k) {
+		int mask = slots.capacity - 1;
+		for (int i = HexCoordinate.mix(k) & mask; ; i = (i+1) & mask) {
+			byte t = slots.terrain(i);
+			if (t == EMPTY) return -1;
+			if (t != DELETED && slots.key(i) == k) return i;
+		}
+	}
+
+	/**
+	 * Place a key known not to be present.
+	 * @param k packed coordinate
+	 * @param t terrain ordinal
+	 */
+	private void insert(long k, byte t) {
+		int mask = slots.capacity - 1;
+		int i = HexCoordinate.mix(k) & mask;
+		while (slots.terrain(i) >= 0) i = (i+1) & mask;
+		if (slots.terrain(i) == EMPTY) ++used;
+		slots.setKey(i, k);
+		slots.setTerrain(i, t);
+		++size;
+	}
+
+	/**
+	 * Move all live slots into fresh storage of the given capacity,
+	 * dropping deleted slots.  The old and new storage briefly coexist.
+	 */
+	private void rehash(int cap) {
+		Slots old = slots;
+		slots = old.create(cap);
+		size = 0;
+		used = 0;
+		for (int i=0; i < old.capacity; ++i) {
+			byte t = old.terrain(i);
+			if (t >= 0) insert(old.key(i), t);
+		}
+	}
+
+	/**
+	 * Make room for another slot once the table is three quarters used.
+	 * If deleted slots are at least a quarter of the table, they are purged
+	 * (at the same capacity); otherwise the live pieces fill more than half
+	 * the table, and it doubles.  Either way, at least a quarter of the table
+	 * must be used again before the next rehash, so each costs constant
+	 * amortized time per addition, however removals and additions are mixed.
+	 */
+	private void makeRoom() {
+		int cap = slots.capacity;
+		if (used - size >= cap / 4) rehash(cap);
+		else if (cap >= MAX_CAPACITY) throw new IllegalStateException("too many tiles for a packed board: " + size);
+		else rehash(cap * 2);
+	}
+
+	@Override // required
+	public int size() {
+		return size;
+	}
+
+	@Override // required
+	public HexPiece get(HexCoordinate h) {
+		if (h == null) return null;
+		int slot = find(HexCoordinate.pack(h.a(), h.b()));
+		if (slot < 0) return null;
+		return new Piece(slot, h);
+	}
+
+	@Override // required
+	public boolean add(HexPiece p) {
+		assert wellFormed() : "invariant broken at start of add";
+		HexCoordinate h = p.getLocation();
+		byte t = (byte)p.getTerrain().ordinal();
+		long k = HexCoordinate.pack(h.a(), h.b());
+		int slot = find(k);
+		if (slot >= 0) {
+			slots.setTerrain(slot, t);
+			return false;
+		}
+		if ((long)(used + 1) * 4 > (long)slots.capacity * 3) makeRoom();
+		insert(k, t);
+		++version;
+		assert wellFormed() : "invariant broken at end of add";
+		return true;
+	}
+
+	/**
+	 * Return whether this board has a piece with the same location and terrain
+	 * as the given piece.  (Pieces are flyweights, so they cannot be compared by identity.)
+	 * This takes expected constant time.
+	 * @param o object to look for
+	 * @return whether a matching piece is on the board
+	 */
+	@Override // efficiency
+	public boolean contains(Object o) {
+		return slotOf(o) >= 0;
+	}
+
+	@Override // efficiency
+	public boolean remove(Object o) {
+		assert wellFormed() : "invariant broken at start of remove";
+		int slot = slotOf(o);
+		if (slot < 0) return false;
+		removeSlot(slot);
+		assert wellFormed() : "invariant broken at end of remove";
+		return true;
+	}
+
+	/**
+	 * Return the slot of a piece with the same location and terrain, or -1 if none.
+	 */
+	private int slotOf(Object o) {
+		if (!(o instanceof HexPiece)) return -1;
+		HexPiece p = (HexPiece)o;
+		HexCoordinate h = p.getLocation();
+		int slot = find(HexCoordinate.pack(h.a(), h.b()));
+		if (slot < 0 || slots.terrain(slot) != p.getTerrain().ordinal()) return -1;
+		return slot;
+	}
+
+	@Override // efficiency
+	public void clear() {
+		if (size == 0) return;
+		slots = slots.create(slots.capacity);
+		size = 0;
+		used = 0;
+		++version;
+	}
+
+	private void removeSlot(int slot) {
+		slots.setTerrain(slot, DELETED);
+		--size;
+		++version;
+	}
+
+	@Override // required
+	public Iterator<HexPiece> iterator() {
+		return new MyIterator();
+	}
+
+	/**
+	 * A flyweight piece that reads its terrain from the board's slots
+	 * and finds its neighbors by probing.
+	 */
+	private class Piece extends HexPiece {
+		private int slot;
+		private int pieceVersion;
+
+		Piece(int slot, HexCoordinate h) {
+			super(TERRAINS[slots.terrain(slot)], h);
+			this.slot = slot;
+			this.pieceVersion = version;
+		}
+
+		/**
+		 * Return the current slot of this piece, or -1 if it has been removed.
+		 * Slots only move when the table is rehashed.
+		 */
+		private int slot() {
+			if (pieceVersion != version) {
+				slot = find(HexCoordinate.pack(location.a(), location.b()));
+				pieceVersion = version;
+			}
+			return slot;
+		}
+
+		@Override // decorate
+		public Terrain getTerrain() {
+			int s = slot();
+			if (s < 0) return terrain;
+			return TERRAINS[slots.terrain(s)];
+		}
+
+		@Override // decorate
+		public HexPiece move(HexDirection d) {
+			int s = slot();
+			if (s < 0) return null;
+			HexCoordinate h = d.move(location);
+			int n = find(HexCoordinate.pack(h.a(), h.b()));
+			if (n < 0) return null;
+			return new Piece(n, h);
+		}
+	}
+
+	private class MyIterator implements Iterator<HexPiece> {
+		private int next = -1; // next live slot, or the capacity if none
+		private int lastReturned = -1;
+		private int colVersion = version;
+
+		MyIterator() {
+			advance();
+		}
+
+		private void advance() {
+			do {
+				++next;
+			} while (next < slots.capacity && slots.terrain(next) < 0);
+		}
+
+		private void checkVersion() {
+			if (colVersion != version) throw new ConcurrentModificationException("stale iterator");
+		}
+
+		@Override // required
+		public boolean hasNext() {
+			checkVersion();
+			return next < slots.capacity;
+		}
+
+		@Override // required
+		public HexPiece next() {
+			if (!hasNext()) throw new NoSuchElementException("no more");
+			lastReturned = next;
+			advance();
+			long k = slots.key(lastReturned);
+			return new Piece(lastReturned, new HexCoordinate(HexCoordinate.unpackA(k), HexCoordinate.unpackB(k)));
+		}
+
+		@Override // implementation
+		public void remove() {
+			checkVersion();
+			if (lastReturned < 0) throw new IllegalStateException("nothing to remove");
+			removeSlot(lastReturned); // slots never move on removal
+			lastReturned = -1;
+			colVersion = version;
+		}
+	}
+}
@@ -0,0 +1,409 @@
+package edu.uwm.cs351;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongPredicate;
+
+import edu.uwm.cs351.HexBoard.HexPiece;
+
+/**
+ * A read-only hex board too large to keep in memory, stored on disk as square regions
+ * of (a,b) space, each in its own file in the format of {@link HexBoardFile}.
+ * A region is loaded (as a {@link FrozenHexBoard}) the first time {@link #get(HexCoordinate)}
+ * or {@link HexPiece#move(HexDirection)} reaches into it, and the least recently used
+ * regions are dropped when the loaded regions exceed a memory budget.
+ * Since pieces find their neighbors through the board, a search
+ * (see {@link Search}) may cross any number of regions.
+ * <p>
+ * When prefetching is on, loading a region also starts loading the regions
+ * next to it in the background, so that a search moving across a region boundary
+ * usually finds its next region ready.  Prefetched regions, whether still loading
+ * or not, count against the budget, and are dropped once the search moves
+ * to a region they are not next to.  They are read by a small pool of
+ * daemon threads shared by all paged boards.
+ * The board keeps counts of hits, misses, evictions and prefetched regions used.
+ * <p>
+ * Boards are written with {@link #write(Iterable, Path, int)}, which creates
+ * the region files and an index of the regions and their sizes.
+ * A paged board is not thread-safe (because of its cache), although prefetching
+ * happens in other threads.
+ */
+public class PagedHexBoard extends AbstractHexBoard {
+	private static final int MAGIC = 0x48455852; // "HEXR"
+	private static final int FORMAT_VERSION = 1;
+	private static final String INDEX_FILE = "index.hexr";
+	private static final ExecutorService PREFETCHER = Executors.newFixedThreadPool(2, r -> {
+		Thread t = new Thread(r, "paged-board-prefetch");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/// The data structure
+	private final Path directory;
+	private final int regionSize;
+	private final Map<Long,Integer> regionTiles = new HashMap<>(); // from the index
+	private final int size;
+	private final long budget;
+	private final LinkedHashMap<Long,FrozenHexBoard> loaded = new LinkedHashMap<>(16, 0.75f, true); // access order
+	private final Map<Long,CompletableFuture<FrozenHexBoard>> prefetching = new HashMap<>(); // neighbors of lastKey
+	private long memoryUsed; // including prefetches
+	private boolean prefetch;
+	private long lastKey; // most recently used region, to skip the cache on repeated access
+	private FrozenHexBoard lastRegion;
+
+	/// Metrics
+	private long hits, misses, evictions, prefetched;
+
+	/**
+	 * Open a board written by {@link #write(Iterable, Path, int)}, loading
+	 * no regions until they are needed.
+	 * @param directory directory of the region files, must not be null
+	 * @param budget largest number of bytes of regions to keep loaded, as estimated
+	 * from the sizes of their arrays, must be positive.
+	 * At least one region is kept, whatever its size.
+	 * @throws IOException if the index cannot be read
+	 * @throws FormatException if the index is not valid
+	 */
+	public PagedHexBoard(Path directory, long budget) throws IOException {
+		if (budget <= 0) throw new IllegalArgumentException("budget must be positive: " + budget);
+		this.directory = directory;
+		this.budget = budget;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(INDEX_FILE))))) {
+			if (in.readInt() != MAGIC) throw new FormatException("not a paged board index: " + directory);
+			int version = in.readInt();
+			if (version != FORMAT_VERSION) throw new FormatException("unsupported paged board version " + version);
+			regionSize = in.readInt();
+			if (regionSize <= 0) throw new FormatException("bad region size " + regionSize);
+			int regions = in.readInt();
+			long total = 0;
+			for (int i=0; i < regions; ++i) {
+				long key = HexCoordinate.pack(in.readInt(), in.readInt());
+				int n = in.readInt();
+				if (n <= 0) throw new FormatException("bad tile count " + n);
+				regionTiles.put(key, n);
+				total += n;
+			}
+			if (total > Integer.MAX_VALUE) throw new FormatException("too many tiles: " + total);
+			size = (int)total;
+		}
+	}
+
+	/**
+	 * Write pieces to a directory as a paged board, with square regions
+	 * of the given size, replacing any paged board already there.
+	 * The pieces are gathered by region in memory before writing.
+	 * @param pieces pieces to write, must not be null, nor include null or
+	 * two pieces at the same location
+	 * @param directory directory to write to, must not be null; created if necessary
+	 * @param regionSize width and height of each region, must be positive
+	 * @throws IOException if a file cannot be written
+	 */
+	public static void write(Iterable<? extends HexPiece> pieces, Path directory, int regionSize) throws IOException {
+		if (regionSize <= 0) throw new IllegalArgumentException("region size must be positive: " + regionSize);
+		Map<Long,List<HexPiece>> regions = new LinkedHashMap<>();
+		for (HexPiece p : pieces) {
+			long key = regionOf(p.getLocation(), regionSize);
+			List<HexPiece> l = regions.get(key);
+			if (l == null) {
+				l = new ArrayList<>();
+				regions.put(key, l);
+			}
+			l.add(p);
+		}
+		Files.createDirectories(directory);
+		for (Map.Entry<Long,List<HexPiece>> e : regions.entrySet()) {
+			HexBoardFile.write(e.getValue(), regionFile(directory, e.getKey()));
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(directory.resolve(INDEX_FILE))))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(regionSize);
+			out.writeInt(regions.size());
+			for (Map.Entry<Long,List<HexPiece>> e : regions.entrySet()) {
+				out.writeInt(HexCoordinate.unpackA(e.getKey()));
+				out.writeInt(HexCoordinate.unpackB(e.getKey()));
+				out.writeInt(e.getValue().size());
+			}
+		}
+	}
+
+	private static long regionOf(HexCoordinate h, int regionSize) {
+		return HexCoordinate.pack(Math.floorDiv(h.a(), regionSize), Math.floorDiv(h.b(), regionSize));
+	}
+
+	private static Path regionFile(Path directory, long key) {
+		return directory.resolve(HexCoordinate.unpackA(key) + "_" + HexCoordinate.unpackB(key) + ".hexb");
+	}
+
+	private static FrozenHexBoard read(Path file) {
+		try {
+			return HexBoardFile.readFrozen(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Return the loaded region with the given key, loading it
+	 * (and evicting others) if necessary.
+	 * @param key packed region coordinates, of a region in the index
+	 * @return region, never null
+	 * @throws UncheckedIOException if the region file cannot be read
+	 */
+	private FrozenHexBoard region(long key) {
+		if (lastRegion != null && key == lastKey) {
+			++hits;
+			return lastRegion;
+		}
+		FrozenHexBoard r = loaded.get(key);
+		if (r != null) {
+			++hits;
+		} else {
+			++misses;
+			CompletableFuture<FrozenHexBoard> f = prefetching.remove(key);
+			if (f != null) memoryUsed -= prefetchEstimate(key);
+			r = take(f);
+			if (r == null) r = read(regionFile(directory, key));
+			else ++prefetched;
+			loaded.put(key, r);
+			memoryUsed += r.memoryEstimate();
+			long[] near = neighbors(key);
+			dropPrefetches(k -> isAmong(near, k));
+			evict();
+			if (memoryUsed > budget) dropPrefetches(k -> false);
+			if (prefetch) prefetchAround(near);
+		}
+		lastKey = key;
+		lastRegion = r;
+		return r;
+	}
+
+	/** Return the result of a prefetch, or null if there was none or it failed. */
+	private static FrozenHexBoard take(CompletableFuture<FrozenHexBoard> f) {
+		if (f == null) return null;
+		try {
+			return f.join();
+		} catch (CompletionException e) {
+			return null; // read again, so that the error is reported to the caller
+		}
+	}
+
+	/** Drop the least recently used regions (other than the last used) until within budget. */
+	private void evict() {
+		Iterator<Map.Entry<Long,FrozenHexBoard>> it = loaded.entrySet().iterator();
+		while (memoryUsed > budget && loaded.size() > 1) {
+			FrozenHexBoard r = it.next().getValue();
+			it.remove();
+			memoryUsed -= r.memoryEstimate();
+			++evictions;
+		}
+	}
+
+	/** Return the keys of the six regions next to the given one. */
+	private static long[] neighbors(long key) {
+		HexCoordinate center = new HexCoordinate(HexCoordinate.unpackA(key), HexCoordinate.unpackB(key));
+		HexDirection[] ds = HexDirection.values();
+		long[] result = new long[ds.length];
+		for (int i=0; i < ds.length; ++i) {
+			HexCoordinate h = ds[i].move(center);
+			result[i] = HexCoordinate.pack(h.a(), h.b());
+		}
+		return result;
+	}
+
+	private static boolean isAmong(long[] keys, long k) {
+		for (long x : keys) {
+			if (x == k) return true;
+		}
+		return false;
+	}
+
+	/** Return the memory that a region will use once loaded, to charge for its prefetch. */
+	private long prefetchEstimate(long key) {
+		return FrozenHexBoard.memoryEstimate(regionTiles.get(key));
+	}
+
+	/**
+	 * Start loading the given regions that are not already (being) loaded,
+	 * as long as each fits in what is left of the budget.
+	 * (Evicting loaded regions to make room would throw out regions
+	 * a search is still using in favor of ones it may never reach.)
+	 */
+	private void prefetchAround(long[] keys) {
+		for (long k : keys) {
+			if (!regionTiles.containsKey(k) || loaded.containsKey(k) || prefetching.containsKey(k)) continue;
+			long cost = prefetchEstimate(k);
+			if (memoryUsed + cost > budget) break;
+			memoryUsed += cost;
+			Path file = regionFile(directory, k);
+			prefetching.put(k, CompletableFuture.supplyAsync(() -> read(file), PREFETCHER));
+		}
+	}
+
+	/**
+	 * Drop the prefetches of regions not accepted by the given test,
+	 * cancelling them if they have not started.
+	 */
+	private void dropPrefetches(LongPredicate keep) {
+		Iterator<Map.Entry<Long,CompletableFuture<FrozenHexBoard>>> it = prefetching.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Long,CompletableFuture<FrozenHexBoard>> e = it.next();
+			if (keep.test(e.getKey())) continue;
+			e.getValue().cancel(false);
+			memoryUsed -= prefetchEstimate(e.getKey());
+			it.remove();
+		}
+	}
+
+	/**
+	 * Set whether loading a region starts loading its neighbors in the background.
+	 * Turning prefetching off drops any prefetched regions not yet used.
+	 * @param on whether to prefetch
+	 */
+	public void setPrefetch(boolean on) {
+		prefetch = on;
+		if (!on) dropPrefetches(k -> false);
+	}
+
+	/**
+	 * Return the width and height of each region.
+	 * @return region size
+	 */
+	public int getRegionSize() {
+		return regionSize;
+	}
+
+	/**
+	 * Return the number of regions currently loaded.
+	 * @return number of loaded regions
+	 */
+	public int getLoadedRegions() {
+		return loaded.size();
+	}
+
+	/**
+	 * Return the estimated memory used by the loaded regions
+	 * and those being prefetched.
+	 * @return estimated bytes used
+	 */
+	public long getMemoryUsed() {
+		return memoryUsed;
+	}
+
+	/**
+	 * Return the number of region accesses that found the region loaded.
+	 * @return number of hits
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Return the number of region accesses that had to load the region
+	 * (including those that found it prefetched).
+	 * @return number of misses
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Return the number of regions dropped to keep within the budget.
+	 * @return number of evictions
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Return the number of misses that were satisfied by a prefetched region.
+	 * @return number of prefetched regions used
+	 */
+	public long getPrefetched() {
+		return prefetched;
+	}
+
+	@Override // required
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @throws UncheckedIOException if the region of the coordinate cannot be read
+	 */
+	@Override // required
+	public HexPiece get(HexCoordinate h) {
+		if (h == null) return null;
+		long key = regionOf(h, regionSize);
+		if (!regionTiles.containsKey(key)) return null;
+		HexPiece p = region(key).get(h);
+		if (p == null) return null;
+		return new Piece(p.getTerrain(), h);
+	}
+
+	/**
+	 * Iterate over the regions in turn, loading each as it is reached.
+	 * The order is fixed for a given index.
+	 */
+	@Override // required
+	public Iterator<HexPiece> iterator() {
+		long[] keys = new long[regionTiles.size()];
+		int n = 0;
+		for (long k : regionTiles.keySet()) keys[n++] = k;
+		Arrays.sort(keys);
+		return new Iterator<HexPiece>() {
+			private int nextRegion;
+			private Iterator<HexPiece> current = null;
+
+			@Override // required
+			public boolean hasNext() {
+				while (current == null || !current.hasNext()) {
+					if (nextRegion == keys.length) return false;
+					current = region(keys[nextRegion++]).iterator();
+				}
+				return true;
+			}
+
+			@Override // required
+			public HexPiece next() {
+				if (!hasNext()) throw new NoSuchElementException("no more");
+				HexPiece p = current.next();
+				return new Piece(p.getTerrain(), p.getLocation());
+			}
+		};
+	}
+
+	/**
+	 * A piece that finds its neighbors through the board, so that
+	 * moving across a region boundary loads the next region.
+	 */
+	private class Piece extends HexPiece {
+		Piece(Terrain t, HexCoordinate h) {
+			super(t, h);
+		}
+
+		@Override // decorate
+		public HexPiece move(HexDirection d) {
+			return get(d.move(location));
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package edu.uwm.cs351.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.ToIntFunction;
+
+/**
+ * A worklist that returns the element with the smallest key first,
+ * kept in a pairing heap.  Adding an element takes constant time and removal
+ * takes amortized logarithmic time.  Unlike an array heap, a pairing heap
+ * supports {@link #decreaseKey(Object)} cheaply, so a search that finds a better
+ * way to reach an element already in the worklist can move it forward
+ * rather than adding it again.
+ * <p>
+ * Elements in the worklist are located (for {@link #decreaseKey(Object)} and
+ * {@link #contains(Object)}) by {@link Object#equals(Object)}, so two equal
+ * elements may not be in the worklist at the same time.
+ * The order among elements with equal keys is unspecified.
+ */
+public class PairingHeapWorklist<E> implements Worklist<E> {
+
+	private static class Node<E> {
+		final E element;
+		int key;
+		Node<E> child; // first child
+		Node<E> sibling; // next sibling
+		Node<E> prev; // previous sibling, or parent for a first child
+
+		Node(E e, int k) {
+			element = e;
+			key = k;
+		}
+	}
+
+	private final ToIntFunction<? super E> key;
+	private final Map<E,Node<E>> nodes = new HashMap<>();
+	private Node<E> root;
+
+	/**
+	 * Create an empty pairing heap worklist.
+	 * @param key function giving the priority of each element (smaller first), must not be null
+	 */
+	public PairingHeapWorklist(ToIntFunction<? super E> key) {
+		if (key == null) throw new NullPointerException("key function cannot be null");
+		this.key = key;
+	}
+
+	/**
+	 * Return the number of elements in the worklist.
+	 * @return number of elements
+	 */
+	public int size() {
+		return nodes.size();
+	}
+
+	/**
+	 * Return whether an element equal to the given one is in the worklist.
+	 * @param o object to look for
+	 * @return whether it is in the worklist
+	 */
+	public boolean contains(Object o) {
+		return nodes.containsKey(o);
+	}
+
+	@Override // required
+	public boolean hasNext() {
+		return root != null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @throws IllegalStateException if an equal element is already in the worklist
+	 */
+	@Override // required
+	public void add(E element) {
+		if (element == null) throw new NullPointerException("element cannot be null");
+		if (nodes.containsKey(element)) throw new IllegalStateException("already in worklist: " + element);
+		Node<E> n = new Node<>(element, key.applyAsInt(element));
+		nodes.put(element, n);
+		root = meld(root, n);
+	}
+
+	/**
+	 * Move an element forward after its key has decreased
+	 * (that is, the key function now gives a smaller value for it
+	 * than when it was added or last updated).
+	 * This takes constant amortized time.
+	 * @param element element in the worklist, must not be null
+	 * @throws NoSuchElementException if the element is not in the worklist
+	 * @throws IllegalArgumentException if the key has increased
+	 */
+	public void decreaseKey(E element) {
+		Node<E> n = nodes.get(element);
+		if (n == null) throw new NoSuchElementException("not in worklist: " + element);
+		int k = key.applyAsInt(element);
+		if (k > n.key) throw new IllegalArgumentException("key increased from " + n.key + " to " + k);
+		n.key = k;
+		if (n == root) return;
+		// cut the subtree out of its parent's list of children, and meld it with the root
+		if (n.prev.child == n) n.prev.child = n.sibling;
+		else n.prev.sibling = n.sibling;
+		if (n.sibling != null) n.sibling.prev = n.prev;
+		n.sibling = n.prev = null;
+		root = meld(root, n);
+	}
+
+	@Override // required
+	public E next() {
+		if (root == null) throw new NoSuchElementException("worklist is empty");
+		Node<E> result = root;
+		nodes.remove(result.element);
+		root = mergePairs(result.child);
+		if (root != null) root.prev = null;
+		return result.element;
+	}
+
+	/** Meld two (single) trees, either of which may be null. */
+	private static <E> Node<E> meld(Node<E> a, Node<E> b) {
+		if (a == null) return b;
+		if (b == null) return a;
+		if (b.key < a.key) {
+			Node<E> t = a;
+			a = b;
+			b = t;
+		}
+		// b becomes the first child of a
+		b.prev = a;
+		b.sibling = a.child;
+		if (a.child != null) a.child.prev = b;
+		a.child = b;
+		a.sibling = a.prev = null;
+		return a;
+	}
+
+	/**
+	 * Combine a list of sibling trees into one, in two passes:
+	 * meld them in pairs from left to right, then meld the results from right to left.
+	 * (Written with loops, since the list may be long.)
+	 */
+	private static <E> Node<E> mergePairs(Node<E> first) {
+		Node<E> paired = null; // results of the first pass, in reverse order (linked by sibling)
+		while (first != null) {
+			Node<E> a = first, b = first.sibling;
+			first = b == null ? null : b.sibling;
+			a.sibling = a.prev = null;
+			if (b != null) b.sibling = b.prev = null;
+			Node<E> m = meld(a, b);
+			m.sibling = paired;
+			paired = m;
+		}
+		Node<E> result = null;
+		while (paired != null) {
+			Node<E> following = paired.sibling;
+			paired.sibling = null;
+			result = meld(paired, result);
+			paired = following;
+		}
+		return result;
+	}
+}
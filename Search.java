@@ -3,10 +3,12 @@ package edu.uwm.cs351;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Point;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 
 import edu.uwm.cs351.HexBoard.HexPiece;
+import edu.uwm.cs351.util.BucketWorklist;
 import edu.uwm.cs351.util.Worklist;
 
 /**
@@ -14,8 +16,11 @@ import edu.uwm.cs351.util.Worklist;
  */
 public class Search {
 	private final TerrainSet passable;
-	private final Worklist<HexPiece> worklist;
+	private final Worklist<HexPiece> worklist; // null for a cost-ordered search
+	private final TerrainCosts costs; // for a cost-ordered search, otherwise null
+	private final boolean informed; // whether a cost-ordered search uses the distance heuristic (A*)
 	private final Map<HexCoordinate, HexDirection> visited = new HashMap<>();
+	private int expanded;
 	
 	/**
 	 * Create a searcher that uses the given worklist.
@@ -25,33 +30,96 @@ public class Search {
 	public Search(TerrainSet ts, Worklist<HexPiece> w) {
 		passable = ts;
 		worklist = w;
+		costs = null;
+		informed = false;
+	}
+
+	private Search(TerrainCosts c, boolean informed) {
+		passable = c.getPassable();
+		worklist = null;
+		costs = c;
+		this.informed = informed;
+	}
+
+	/**
+	 * Create a searcher that uses A* search: pieces are expanded in order
+	 * of the length of the path found to them plus their distance to the goal
+	 * (see {@link HexCoordinate#distance(HexCoordinate)}), and among equals,
+	 * the one furthest from the start first.
+	 * Since the distance never overestimates, the path found is a shortest one,
+	 * as with a FIFO worklist, but far fewer pieces are expanded when the goal is reachable.
+	 * @param ts terrains which we can pass through
+	 * @return new searcher, never null
+	 */
+	public static Search aStar(TerrainSet ts) {
+		return new Search(TerrainCosts.uniform(ts), true);
+	}
+
+	/**
+	 * Create a searcher that finds a cheapest path, given the cost of moving
+	 * onto each terrain, using A* search with the distance to the goal
+	 * times the smallest cost as the estimate of the remaining cost.
+	 * @param c terrain costs, must not be null
+	 * @return new searcher, never null
+	 */
+	public static Search aStar(TerrainCosts c) {
+		return new Search(c, true);
+	}
+
+	/**
+	 * Create a searcher that finds a cheapest path, given the cost of moving
+	 * onto each terrain, using Dijkstra's algorithm: pieces are expanded in order of
+	 * the cost of the cheapest path found to them.
+	 * @param c terrain costs, must not be null
+	 * @return new searcher, never null
+	 */
+	public static Search dijkstra(TerrainCosts c) {
+		return new Search(c, false);
 	}
 	
 	private void clear() {
 		// TODO: empty worklist and visited set	
 		visited.clear();
+		expanded = 0;
+		if (worklist == null) return;
 		while (worklist.hasNext()) {
 			worklist.next(); // 清空 worklist 中現有元素
 		}
 	}
+
+	/**
+	 * Return the number of pieces taken from the worklist
+	 * (and whose neighbors were examined) in the last search.
+	 * @return number of pieces expanded
+	 */
+	public int getExpanded() {
+		return expanded;
+	}
 	
 	/**
 	 * Find a path through a hex board.
+	 * If the board keeps a connectivity index for our terrains
+	 * (see {@link HexBoard#connectivity(TerrainSet)}), an unreachable
+	 * goal is rejected without searching.
 	 * @param from coordinate to start from (must not be null)
 	 * @param to coordinate to reach (must not be null)
 	 * @param b hex board to traverse
 	 * @return a search state including a possible path, or null if no path is found.
 	 */
-	public HexPath find(HexCoordinate from, HexCoordinate to, HexBoard b) {
+	public HexPath find(HexCoordinate from, HexCoordinate to, AbstractHexBoard b) {
 		clear();
 		HexPiece start = b.get(from);
 		if (start == null || !passable.contains(start.getTerrain())) return null; //起點無效或不在可通行的地形範圍內
+		ConnectivityIndex index = b.existingConnectivity(passable);
+		if (index != null && !index.connected(from, to)) return null; // unreachable: no need to search
 		visited.put(from, null); // start of path
+		if (worklist == null) return findCheapest(start, to);
 		// TODO: Use worklist to find path to "to"
 		worklist.add(start);
 
 		while (worklist.hasNext()) {
 			HexPiece current = worklist.next();
+			++expanded;
 			HexCoordinate loc = current.getLocation(); //工作列表中取出下一個棋子 (HexPiece)，並取得它的位置 loc
 
 			if (loc.equals(to)) {
@@ -75,6 +143,63 @@ public class Search {
 
 	}
 	
+	/**
+	 * A piece on the frontier of a cost-ordered search, with the cost of the path
+	 * found to it (g) and that plus the estimated cost to the goal (f).
+	 */
+	private static class Node {
+		final HexPiece piece;
+		final int g, f;
+
+		Node(HexPiece p, int g, int f) {
+			piece = p;
+			this.g = g;
+			this.f = f;
+		}
+	}
+
+	private static final Comparator<Node> DEEPER_FIRST = (n1, n2) -> Integer.compare(n2.g, n1.g);
+
+	/**
+	 * Continue a cost-ordered search (A* or Dijkstra) from the start
+	 * (already visited) to the goal.
+	 * Costs are positive integers and the estimate (the distance times the smallest cost,
+	 * or zero for Dijkstra) is consistent, so the f values of the pieces expanded
+	 * never decrease, and the frontier can be a bucket queue.
+	 * Among pieces with equal f, the one with the costlier path so far
+	 * (the one nearest the goal, by the estimate) comes out first.
+	 * A piece may be queued more than once if a cheaper path to it is found;
+	 * the stale entries are skipped when they come out.
+	 */
+	private HexPath findCheapest(HexPiece start, HexCoordinate to) {
+		Map<HexCoordinate, Integer> best = new HashMap<>(); // cost of cheapest path found so far
+		BucketWorklist<Node> frontier = new BucketWorklist<>((n) -> n.f, DEEPER_FIRST);
+		int scale = informed ? costs.getMinimumCost() : 0;
+		best.put(start.getLocation(), 0);
+		frontier.add(new Node(start, 0, scale * start.getLocation().distance(to)));
+		while (frontier.hasNext()) {
+			Node n = frontier.next();
+			HexCoordinate loc = n.piece.getLocation();
+			if (n.g > best.get(loc)) continue; // stale
+			++expanded;
+			if (loc.equals(to)) return makePath(to);
+			for (HexDirection d : HexDirection.values()) {
+				HexPiece neighbor = n.piece.move(d);
+				if (neighbor == null) continue;
+				int c = costs.cost(neighbor.getTerrain());
+				if (c < 0) continue; // impassable
+				HexCoordinate nloc = neighbor.getLocation();
+				int g = n.g + c;
+				Integer old = best.get(nloc);
+				if (old != null && old <= g) continue;
+				best.put(nloc, g);
+				visited.put(nloc, d.reverse());
+				frontier.add(new Node(neighbor, g, g + scale * nloc.distance(to)));
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * Create a hex path starting at the initial coordinate to the coordinate given.
 	 * This method should only be called if the {@link visited} map contains all
@@ -0,0 +1,152 @@
+package edu.uwm.cs351;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.uwm.cs351.HexBoard.HexPiece;
+
+/**
+ * An immutable table of the cost of moving onto a tile of each terrain,
+ * for finding cheapest paths (see {@link Search#dijkstra(TerrainCosts)}
+ * and {@link Search#aStar(TerrainCosts)}).
+ * Costs are positive integers, kept in an array indexed by terrain ordinal;
+ * a terrain without a cost cannot be crossed at all.
+ */
+public class TerrainCosts {
+	private static final Terrain[] TERRAINS = Terrain.values();
+	private static final int IMPASSABLE = -1;
+
+	private final int[] costs; // by ordinal, IMPASSABLE if none
+	private final TerrainSet passable;
+	private final int minimum; // smallest cost, or 0 if nothing is passable
+
+	/**
+	 * Create a table in which no terrain can be crossed.
+	 * Use {@link #with(Terrain, int)} to add costs.
+	 */
+	public TerrainCosts() {
+		this(fill(IMPASSABLE));
+	}
+
+	private static int[] fill(int cost) {
+		int[] result = new int[TERRAINS.length];
+		Arrays.fill(result, cost);
+		return result;
+	}
+
+	private TerrainCosts(int[] costs) {
+		this.costs = costs;
+		List<Terrain> ts = new ArrayList<>();
+		int min = 0;
+		for (Terrain t : TERRAINS) {
+			int c = costs[t.ordinal()];
+			if (c == IMPASSABLE) continue;
+			ts.add(t);
+			if (min == 0 || c < min) min = c;
+		}
+		passable = new TerrainSet(ts.toArray(new Terrain[0]));
+		minimum = min;
+	}
+
+	/**
+	 * Return a table in which each of the given terrains costs one,
+	 * and all others cannot be crossed, so that the cheapest path is the shortest.
+	 * @param ts passable terrains, must not be null
+	 * @return new table, never null
+	 */
+	public static TerrainCosts uniform(TerrainSet ts) {
+		int[] costs = fill(IMPASSABLE);
+		for (Terrain t : ts) costs[t.ordinal()] = 1;
+		return new TerrainCosts(costs);
+	}
+
+	/**
+	 * Return a table like this one, except for the cost of one terrain.
+	 * @param t terrain, must not be null
+	 * @param cost cost of moving onto a tile of this terrain, must be positive
+	 * @return new table, never null
+	 */
+	public TerrainCosts with(Terrain t, int cost) {
+		if (cost <= 0) throw new IllegalArgumentException("cost must be positive: " + cost);
+		int[] result = costs.clone();
+		result[t.ordinal()] = cost;
+		return new TerrainCosts(result);
+	}
+
+	/**
+	 * Return a table like this one, except that one terrain cannot be crossed.
+	 * @param t terrain, must not be null
+	 * @return new table, never null
+	 */
+	public TerrainCosts without(Terrain t) {
+		int[] result = costs.clone();
+		result[t.ordinal()] = IMPASSABLE;
+		return new TerrainCosts(result);
+	}
+
+	/**
+	 * Return the cost of moving onto a tile of the given terrain.
+	 * @param t terrain, must not be null
+	 * @return cost, or a negative number if the terrain cannot be crossed
+	 */
+	public int cost(Terrain t) {
+		return costs[t.ordinal()];
+	}
+
+	/**
+	 * Return whether tiles of the given terrain can be crossed.
+	 * @param t terrain, must not be null
+	 * @return whether the terrain has a cost
+	 */
+	public boolean isPassable(Terrain t) {
+		return costs[t.ordinal()] != IMPASSABLE;
+	}
+
+	/**
+	 * Return the terrains that can be crossed.
+	 * @return set of terrains with a cost, never null
+	 */
+	public TerrainSet getPassable() {
+		return passable;
+	}
+
+	/**
+	 * Return the smallest cost of any terrain, which (times the distance)
+	 * never overestimates the cost of reaching a location.
+	 * @return smallest cost, or zero if no terrain can be crossed
+	 */
+	public int getMinimumCost() {
+		return minimum;
+	}
+
+	/**
+	 * Return the cost of following a path on a board: the sum of the costs
+	 * of the tiles moved onto (not counting the start).
+	 * @param p path to follow, must not be null
+	 * @param b board to follow it on, must not be null
+	 * @return cost of the path, or a negative number if it leaves the board
+	 * or crosses a terrain that cannot be crossed
+	 */
+	public int costOf(HexPath p, AbstractHexBoard b) {
+		int total = 0;
+		HexCoordinate h = p.getStart();
+		for (HexDirection d : p.getDirections()) {
+			h = d.move(h);
+			HexPiece piece = b.get(h);
+			if (piece == null || !isPassable(piece.getTerrain())) return IMPASSABLE;
+			total += cost(piece.getTerrain());
+		}
+		return total;
+	}
+
+	@Override // implementation
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		for (Terrain t : passable) {
+			if (sb.length() > 1) sb.append(", ");
+			sb.append(t).append('=').append(cost(t));
+		}
+		return sb.append('}').toString();
+	}
+}
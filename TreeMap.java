@@ -2,9 +2,11 @@ package edu.uwm.cs351.util;
 
 import java.util.AbstractMap;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
@@ -80,6 +82,81 @@ public class TreeMap<K,V>  extends AbstractMap<K,V> {
 		return true;
 	}
 
+	private static InvariantLevel invariantLevel = InvariantLevel.configured(TreeMap.class);
+	private int opsSinceCheck; // operations since the last sampled check
+	private final List<Node<K,V>> touched = new ArrayList<>(); // relinked since the last incremental check (only with assertions on)
+
+	/**
+	 * Return how thoroughly tree maps check their invariant when assertions are enabled.
+	 * @return current level, never null
+	 */
+	public static InvariantLevel getInvariantLevel() {
+		return invariantLevel;
+	}
+
+	/**
+	 * Set how thoroughly tree maps check their invariant when assertions are enabled.
+	 * At the incremental level, only the nodes whose links or keys an operation
+	 * changed are checked, each against its children, along with the fields;
+	 * this takes constant time per operation.
+	 * Iterators always check their own stack; the level only decides how much of the map is checked.
+	 * @param l level to use, must not be null
+	 */
+	public static void setInvariantLevel(InvariantLevel l) {
+		if (l == null) throw new NullPointerException("invariant level cannot be null");
+		invariantLevel = l;
+	}
+
+	/**
+	 * Check the invariant as thoroughly as the current level asks.
+	 * @return whether no problem was found
+	 */
+	private boolean checkInvariant() {
+		switch (invariantLevel) {
+		case OFF:
+			return true;
+		case SAMPLED:
+			if (!InvariantLevel.sampleDue(++opsSinceCheck, numItems)) return true;
+			opsSinceCheck = 0;
+			return wellFormed();
+		case INCREMENTAL:
+			return wellFormedTouched();
+		default:
+			return wellFormed();
+		}
+	}
+
+	/**
+	 * Check the facts about the fields that take constant time, and that each node
+	 * relinked since the last such check has a non-null key that is ordered
+	 * with those of its children.
+	 * @return whether no problem was found
+	 */
+	private boolean wellFormedTouched() {
+		if (comparator == null) return report("null comparator");
+		if (numItems < 0 || (root == null) != (numItems == 0)) return report("count wrong: " + numItems + " with " + (root == null ? "no" : "a") + " root");
+		if (root != null && root.key == null) return report("Found null data in tree");
+		try {
+			for (Node<K,V> n : touched) {
+				if (n.key == null) return report("Found null data in tree");
+				if (n.left != null && (n.left.key == null || comparator.compare(n.left.key, n.key) >= 0)) return report("Found out of order data: " + n.left.key + " not coming before " + n.key);
+				if (n.right != null && (n.right.key == null || comparator.compare(n.key, n.right.key) >= 0)) return report("Found out of order data: " + n.right.key + " not coming after " + n.key);
+			}
+		} finally {
+			touched.clear();
+		}
+		return true;
+	}
+
+	/**
+	 * Record a node whose links or key changed, for the next incremental check.
+	 * @return true, so that it may be called in an assertion
+	 */
+	private boolean touch(Node<K,V> n) {
+		if (n != null && invariantLevel == InvariantLevel.INCREMENTAL) touched.add(n);
+		return true;
+	}
+
 
 	/// constructors
 
@@ -97,7 +174,7 @@ public class TreeMap<K,V>  extends AbstractMap<K,V> {
 				return ((Comparable<K>)arg0).compareTo(arg1);
 			}
 		};
-		assert wellFormed() : "invariant broken after constructor()";
+		assert checkInvariant() : "invariant broken after constructor()";
 	}
 
 	/**
@@ -108,7 +185,7 @@ public class TreeMap<K,V>  extends AbstractMap<K,V> {
 	public TreeMap(Comparator<K> c) {
 		if (c == null) throw new IllegalArgumentException("comparator must not be null");
 		comparator = c;
-		assert wellFormed() : "invariant broken after constructor(Comparator)";
+		assert checkInvariant() : "invariant broken after constructor(Comparator)";
 	}
 
 	// The following is a useful private method to check that the
@@ -141,13 +218,13 @@ public class TreeMap<K,V>  extends AbstractMap<K,V> {
 
 	@Override // efficiency (and make independent of iterators)
 	public boolean containsKey(Object o) {
-		assert wellFormed() : "invariant broken at start of contains";
+		assert checkInvariant() : "invariant broken at start of contains";
 		return getNode(o) != null;
 	}
 
 	@Override // efficiency (and make independent of iterators)
 	public V get(Object o) {
-		assert wellFormed() : "invariant broken at start of get";
+		assert checkInvariant() : "invariant broken at start of get";
 		Node<K,V> n = getNode(o);
 		if (n == null) return null;
 		return n.value;
@@ -164,14 +241,15 @@ public class TreeMap<K,V>  extends AbstractMap<K,V> {
 	 */
 	@Override // implementation
 	public V put(K key, V value) throws IllegalArgumentException {
-		assert wellFormed() : "invariant broken at beginning of put";
+		assert checkInvariant() : "invariant broken at beginning of put";
 		if (key == null) throw new NullPointerException("Cannot use null as a key");
 		V res = do_put(root,key,value,null,false);
-		assert wellFormed() : "invariant broken at end of put";
+		assert checkInvariant() : "invariant broken at end of put";
 		return res;
 	}
 
 	private void connect(Node<K,V> parent, boolean isr, Node<K,V> child) {
+		assert touch(parent == null ? child : parent);
 		if (parent == null) root = child;
 		else if (isr) parent.right = child;
 		else parent.left = child;
@@ -200,12 +278,12 @@ public class TreeMap<K,V>  extends AbstractMap<K,V> {
 
 	@Override // implementation
 	public V remove(Object o) {
-		assert wellFormed() : "invariant broken at beginning of remove";
+		assert checkInvariant() : "invariant broken at beginning of remove";
 		V result;
 		K x = asKey(o);		
 		if (x == null) result = null;
 		else result = do_remove(root,x,null,false);
-		assert wellFormed() : "invariant broken at end of remove";
+		assert checkInvariant() : "invariant broken at end of remove";
 		return result;
 	}
 
@@ -245,6 +323,7 @@ public class TreeMap<K,V>  extends AbstractMap<K,V> {
 				t = t.right;
 			}
 			n.key = t.key;
+			assert touch(n);
 			n.value = do_remove_here(t,prev,true);
 			return saved;
 		}
@@ -254,7 +333,7 @@ public class TreeMap<K,V>  extends AbstractMap<K,V> {
 
 	@Override // required
 	public Set<Entry<K, V>> entrySet() {
-		assert wellFormed() : "invariant broken at beginning of entrySet";
+		assert checkInvariant() : "invariant broken at beginning of entrySet";
 		if (entrySet == null) {
 			entrySet = new EntrySet();
 		}
@@ -270,13 +349,13 @@ public class TreeMap<K,V>  extends AbstractMap<K,V> {
 
 		@Override // required
 		public int size() {
-			assert wellFormed() : "invariant broken in size()";
+			assert checkInvariant() : "invariant broken in size()";
 			return numItems;
 		}
 
 		@Override // required
 		public Iterator<Entry<K, V>> iterator() {
-			assert wellFormed() : "invariant broken in iterator()";
+			assert checkInvariant() : "invariant broken in iterator()";
 			return new MyIterator();
 		}
 
@@ -284,7 +363,7 @@ public class TreeMap<K,V>  extends AbstractMap<K,V> {
 
 		@Override // efficiency
 		public boolean contains(Object o) {
-			assert wellFormed() : "Invariant broken at start of EntrySet.contains";
+			assert checkInvariant() : "Invariant broken at start of EntrySet.contains";
 			if (!(o instanceof Entry<?,?>)) return false;
 			Entry<?,?> e = (Entry<?,?>)o;
 			Node<K,V> node = getNode(e.getKey());
@@ -294,22 +373,22 @@ public class TreeMap<K,V>  extends AbstractMap<K,V> {
 
 		@Override // efficiency
 		public boolean remove(Object x) {
-			assert wellFormed() : "Invariant broken at start of EntrySet.remove";
+			assert checkInvariant() : "Invariant broken at start of EntrySet.remove";
 			if (!contains(x)) return false;
 			TreeMap.this.remove(((Entry<?,?>)x).getKey());
 			// the following check is redundant because TreeMap.remove already called it: 
-			assert wellFormed() : "Invariant broken at end of EntrySet.remove";
+			assert checkInvariant() : "Invariant broken at end of EntrySet.remove";
 			return true;
 		}
 
 		@Override // efficiency, also to make independent of "remove"
 		public void clear() {
-			assert wellFormed() : "invariant broken at beginning of clear";
+			assert checkInvariant() : "invariant broken at beginning of clear";
 			if (root == null) return;
 			root = null;
 			numItems = 0;
 			++version;
-			assert wellFormed() : "invariant broken at end of clear";
+			assert checkInvariant() : "invariant broken at end of clear";
 		}
 	}
 
@@ -324,7 +403,7 @@ public class TreeMap<K,V>  extends AbstractMap<K,V> {
 		int myVersion = version;
 
 		boolean wellFormed() {
-			if (!TreeMap.this.wellFormed()) return false;
+			if (!TreeMap.this.checkInvariant()) return false;
 			if (version != myVersion) return true;
 			if (pending == null) return report("pending is null");
 			Node<K,V> node = root;
@@ -701,7 +780,7 @@ public class TreeMap<K,V>  extends AbstractMap<K,V> {
 
 	@Override // efficiency
 	public void putAll(Map<? extends K, ? extends V> m) {
-		assert wellFormed() : "invariant broken before putAll";
+		assert checkInvariant() : "invariant broken before putAll";
 		if (m.size() <= this.size()) {
 			// System.out.println("(using default implementation)");
 			super.putAll(m); // more efficient to simply put one by one
@@ -727,7 +806,7 @@ public class TreeMap<K,V>  extends AbstractMap<K,V> {
 		// 6. increment version (our iterator cannot cope with possibly new nodes
 		//    even if the size didn't change.)
 	    version++;
-		assert wellFormed() : "invariant broken in putAll";
+		assert checkInvariant() : "invariant broken in putAll";
 	}
 
 	/**